@@ -0,0 +1,27 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler to report allocation rates.
+ * Pass a regular expression to select benchmarks, eg. "EvalBenchmark.fast".
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public class Benchmarks {
+    static public void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "poker\\..*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("-Xmx2g")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the card primitives.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardBenchmark {
+    private String hand;
+    private CardSet cardSet;
+    private Card first;
+    private Card second;
+    private Card.Rank rank;
+    private Card.Suit suit;
+
+    @Setup
+    public void setup() {
+        List<Card> deck = Card.newDeck();
+        Collections.shuffle(deck, new Random(42));
+        hand = new CardList(deck.subList(0, 7)).toString();
+        cardSet = new CardSet(deck.subList(0, 7));
+        first = deck.get(0);
+        second = deck.get(1);
+        rank = first.getRank();
+        suit = first.getSuit();
+    }
+
+    @Benchmark
+    public CardList cardListValueOf() {
+        return CardList.valueOf(hand);
+    }
+
+    @Benchmark
+    public Card cardValueOf() {
+        return Card.valueOf(rank, suit);
+    }
+
+    @Benchmark
+    public CardList cardSetToList() {
+        return cardSet.toList();
+    }
+
+    @Benchmark
+    public Pocket pocket() {
+        return new Pocket(first, second);
+    }
+
+    @Benchmark
+    public void pocketToString(Blackhole bh) {
+        bh.consume(new Pocket(first, second).toString());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the hand evaluators over hands dealt from a shuffled deck.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(EvalBenchmark.HANDS)
+public class EvalBenchmark {
+    static final int HANDS = 1024;
+
+    @Param({ "5", "6", "7" })
+    public int cards;
+
+    private CardSet[] cardSets;
+    private long[] masks;
+    private int[] values;
+
+    /**
+     * Return HANDS hands of n cards, each dealt from a shuffled deck
+     */
+    static CardSet[] deal(int n) {
+        Random random = new Random(42);
+        CardSet[] hands = new CardSet[HANDS];
+        for (int i = 0; i < HANDS; ++i) {
+            List<Card> deck = Card.newDeck();
+            Collections.shuffle(deck, random);
+            hands[i] = new CardSet(deck.subList(0, n));
+        }
+        return hands;
+    }
+
+    @Setup
+    public void setup() {
+        cardSets = deal(cards);
+        masks = new long[HANDS];
+        values = new int[HANDS];
+        for (int i = 0; i < HANDS; ++i) {
+            masks[i] = cardSets[i].longValue();
+        }
+    }
+
+    @Benchmark
+    public void eval(Blackhole bh) {
+        for (CardSet cs : cardSets) {
+            bh.consume(Hand.eval(cs).getValue());
+        }
+    }
+
+    @Benchmark
+    public void evalCards(Blackhole bh) {
+        for (CardSet cs : cardSets) {
+            bh.consume(Hand.eval(cs).getCards());
+        }
+    }
+
+    @Benchmark
+    public void fastEval(Blackhole bh) {
+        for (CardSet cs : cardSets) {
+            bh.consume(Hand.fastEval(cs));
+        }
+    }
+
+    @Benchmark
+    public void stateEval(Blackhole bh) {
+        for (long mask : masks) {
+            bh.consume(StateEvaluator.eval(StateEvaluator.START, mask));
+        }
+    }
+
+    @Benchmark
+    public int[] evalBatch() {
+        Hand.evalBatch(masks, values);
+        return values;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of {@link HashEvaluator}, which only takes hands of up to 6
+ * cards, over the same hands as {@link EvalBenchmark}.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(EvalBenchmark.HANDS)
+public class HashEvalBenchmark {
+    @Param({ "5", "6" })
+    public int cards;
+
+    private long[] masks;
+
+    @Setup
+    public void setup() {
+        CardSet[] hands = EvalBenchmark.deal(cards);
+        masks = new long[hands.length];
+        for (int i = 0; i < hands.length; ++i) {
+            masks[i] = hands[i].longValue();
+        }
+    }
+
+    @Benchmark
+    public void hashEval(Blackhole bh) {
+        for (long mask : masks) {
+            bh.consume(HashEvaluator.eval(mask));
+        }
+    }
+}
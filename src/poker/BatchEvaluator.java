@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+/**
+ * Evaluates hands in batches for {@link Hand#evalBatch(long[], int[])}.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+interface BatchEvaluator {
+    void evalBatch(long[] masks, int[] out, int length);
+
+    /**
+     * Scalar implementation
+     */
+    static final BatchEvaluator SCALAR = new BatchEvaluator() {
+        @Override
+        public void evalBatch(long[] masks, int[] out, int length) {
+            for (int i = 0; i < length; ++i) {
+                out[i] = Hand.fastEval(masks[i]);
+            }
+        }
+    };
+
+    /**
+     * Return the vector implementation if the jdk.incubator.vector module is
+     * present, otherwise the scalar one. Setting the poker.vector system
+     * property to false forces the scalar implementation.
+     */
+    static BatchEvaluator create() {
+        if (!Boolean.parseBoolean(System.getProperty("poker.vector", "true")) ||
+                !ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return SCALAR;
+        }
+        try {
+            return (BatchEvaluator) Class.forName("poker.VectorEval")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return SCALAR;
+        }
+    }
+}
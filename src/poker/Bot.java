@@ -0,0 +1,32 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+/**
+ * A player at a {@link Table}.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public interface Bot {
+    /**
+     * Return the chips seat puts in: 0 to check, {@link Table#getToCall(int)}
+     * to call, more to raise or {@link Table#FOLD}. A raise smaller than
+     * the minimum is made the minimum, an amount between 0 and the call is a
+     * call, and an amount more than the stack is all-in. A seat that has
+     * already acted this street can not raise again when the bet has only
+     * gone up by an all-in short of a full raise, so its raise is a call.
+     * Called from the thread playing the table.
+     */
+    long act(Table table, int seat);
+
+    /**
+     * Checks or calls every bet
+     */
+    static final Bot CALLER = (table, seat) -> table.getToCall(seat);
+
+    /**
+     * Makes the minimum raise every turn
+     */
+    static final Bot RAISER = (table, seat) -> table.getToCall(seat) + table.getMinRaise();
+}
@@ -30,13 +30,16 @@ public final class Card implements Comparable<Card> {
             return this.letter;
         }
 
-        static public Suit valueOf(char letter) {
+        static private final Suit[] byLetter = new Suit[256];
+
+        static {
             for (Suit s : Suit.values()) {
-                if (s.letter == letter) {
-                    return s;
-                }
+                byLetter[s.letter] = s;
             }
-            return null;
+        }
+
+        static public Suit valueOf(char letter) {
+            return letter < byLetter.length ? byLetter[letter] : null;
         }
     }
 
@@ -73,13 +76,16 @@ public final class Card implements Comparable<Card> {
             return this.value;
         }
 
-        static public Rank valueOf(char letter) {
+        static private final Rank[] byLetter = new Rank[256];
+
+        static {
             for (Rank r : Rank.values()) {
-                if (r.letter == letter) {
-                    return r;
-                }
+                byLetter[r.letter] = r;
             }
-            return null;
+        }
+
+        static public Rank valueOf(char letter) {
+            return letter < byLetter.length ? byLetter[letter] : null;
         }
 
         static public Rank valueOf(int value) {
@@ -148,7 +154,7 @@ public final class Card implements Comparable<Card> {
     }
 
     static public Card valueOf(int index) {
-        if (index < 0 || index > protoDeck.size()) {
+        if (index < 0 || index >= protoDeck.size()) {
             throw new IllegalArgumentException("Invalid card; index=" + index);
         }
         return protoDeck.get(index);
@@ -161,24 +167,58 @@ public final class Card implements Comparable<Card> {
         } else {
             index = Long.numberOfTrailingZeros(num);
         }
-        if (index < 0 || index > protoDeck.size()) {
+        if (index < 0 || index >= protoDeck.size()) {
             throw new IllegalArgumentException("Invalid card; num=" + num);
         }
         return valueOf(index);
     }
 
     static public Card valueOf(Rank rank, Suit suit) {
-        int index = (new Card(rank, suit)).intValue();
-        return valueOf(index);
+        return protoDeck.get(intValue(rank, suit));
+    }
+
+    /**
+     * Return index of the card with rank and suit, see {@link #intValue()}
+     */
+    static public int intValue(Rank rank, Suit suit) {
+        return rank.ordinal() * Suit.size + suit.ordinal();
+    }
+
+    /**
+     * Return ordinal of the rank of card index
+     */
+    static public int rank(int card) {
+        return card >> 2;
+    }
+
+    /**
+     * Return ordinal of the suit of card index
+     */
+    static public int suit(int card) {
+        return card & 3;
+    }
+
+    /**
+     * Return bitset value of card index, see {@link #longValue()}
+     */
+    static public long longValue(int card) {
+        return 1L << card;
+    }
+
+    static public String toString(int card) {
+        return valueOf(card).toString();
     }
 
     static public Card valueOf(String card) {
         if (card.length() != 2) {
             throw new IllegalArgumentException("Invalid card format");
         }
-        char rank = card.charAt(0);
-        char suit = card.charAt(1);
-        return valueOf(Rank.valueOf(rank), Suit.valueOf(suit));
+        Rank rank = Rank.valueOf(card.charAt(0));
+        Suit suit = Suit.valueOf(card.charAt(1));
+        if (rank == null || suit == null) {
+            throw new IllegalArgumentException("Invalid card; card=" + card);
+        }
+        return valueOf(rank, suit);
     }
 
     static public List<Card> newDeck() {
@@ -6,8 +6,6 @@ package poker;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A list of poker cards
@@ -43,14 +41,18 @@ public class CardList extends ArrayList<Card> {
         return sb.toString();
     }
 
-    static final private Pattern listPattern = Pattern.compile("[0-9TJQKA][cdhs]");
-
+    /**
+     * Return list of the cards found in str, eg. "[Ah,Kd]". Characters that
+     * are not part of a card are ignored.
+     */
     static public CardList valueOf(String str) {
-        Matcher matcher = listPattern.matcher(str);
         CardList cardList = new CardList();
-        while (matcher.find()) {
-            Card card = Card.valueOf(matcher.group());
-            cardList.add(card);
+        for (int i = 0, n = str.length() - 1; i < n; ++i) {
+            int card = CardParser.cardIndex(str.charAt(i), str.charAt(i + 1));
+            if (card >= 0) {
+                cardList.add(Card.valueOf(card));
+                i++;
+            }
         }
         return cardList;
     }
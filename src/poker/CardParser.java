@@ -0,0 +1,211 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses cards such as "[Ah,Kd] 7c" without allocating.
+ *
+ * A parser can be reused for any number of inputs. Cards are two characters,
+ * rank then suit, and may be separated by whitespace, commas and brackets.
+ * Instead of throwing, a failed parse records the error and the position of
+ * the offending character.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class CardParser {
+    static public final int OK = 0;
+    static public final int ERROR_CHARACTER = 1;
+    static public final int ERROR_SUIT = 2;
+    static public final int ERROR_DUPLICATE = 3;
+
+    // Rank ordinal or suit ordinal + 1 for each character, 0 if not valid
+    static private final byte[] ranks = new byte[256];
+    static private final byte[] suits = new byte[256];
+    static private final boolean[] separators = new boolean[256];
+
+    static {
+        for (Card.Rank rank : Card.Rank.values()) {
+            ranks[rank.getLetter()] = (byte) (rank.ordinal() + 1);
+        }
+        for (Card.Suit suit : Card.Suit.values()) {
+            suits[suit.getLetter()] = (byte) (suit.ordinal() + 1);
+        }
+        for (char c : " \t\r\n,[]".toCharArray()) {
+            separators[c] = true;
+        }
+    }
+
+    private final int[] cards = new int[52];
+    private long mask;
+    private int count;
+    private int position;
+    private int error;
+
+    /**
+     * Return index of the card, or -1 if the characters are not a card
+     */
+    static int cardIndex(int rank, int suit) {
+        if ((rank | suit) >= 256) {
+            return -1;
+        }
+        int r = ranks[rank];
+        int s = suits[suit];
+        if (r == 0 || s == 0) {
+            return -1;
+        }
+        return (r - 1) * Card.Suit.size + s - 1;
+    }
+
+    static private boolean isSeparator(int c) {
+        return c < 256 && separators[c];
+    }
+
+    public boolean parse(CharSequence str) {
+        return parse(str, 0, str.length());
+    }
+
+    /**
+     * Parse the characters from start (inclusive) to end (exclusive)
+     */
+    public boolean parse(CharSequence str, int start, int end) {
+        reset();
+        int i = start;
+        while (i < end) {
+            int c = str.charAt(i);
+            if (isSeparator(c)) {
+                i++;
+            } else if (i + 1 < end && add(c, str.charAt(i + 1), i)) {
+                i += 2;
+            } else {
+                return fail(c, i, end);
+            }
+        }
+        position = end;
+        return true;
+    }
+
+    public boolean parse(char[] chars, int start, int end) {
+        reset();
+        int i = start;
+        while (i < end) {
+            int c = chars[i];
+            if (isSeparator(c)) {
+                i++;
+            } else if (i + 1 < end && add(c, chars[i + 1], i)) {
+                i += 2;
+            } else {
+                return fail(c, i, end);
+            }
+        }
+        position = end;
+        return true;
+    }
+
+    /**
+     * Parse the ASCII bytes from start (inclusive) to end (exclusive). The
+     * position of the buffer is not changed.
+     */
+    public boolean parse(ByteBuffer buffer, int start, int end) {
+        reset();
+        int i = start;
+        while (i < end) {
+            int c = buffer.get(i) & 0xFF;
+            if (isSeparator(c)) {
+                i++;
+            } else if (i + 1 < end && add(c, buffer.get(i + 1) & 0xFF, i)) {
+                i += 2;
+            } else {
+                return fail(c, i, end);
+            }
+        }
+        position = end;
+        return true;
+    }
+
+    private void reset() {
+        mask = 0;
+        count = 0;
+        error = OK;
+    }
+
+    private boolean add(int rank, int suit, int i) {
+        int card = cardIndex(rank, suit);
+        if (card < 0) {
+            return false;
+        }
+        long bit = 1L << card;
+        if ((mask & bit) != 0) {
+            error = ERROR_DUPLICATE;
+            position = i;
+            return false;
+        }
+        mask |= bit;
+        cards[count++] = card;
+        return true;
+    }
+
+    private boolean fail(int c, int i, int end) {
+        if (error == OK) {
+            if (c < 256 && ranks[c] != 0) {
+                error = ERROR_SUIT;
+                position = i + 1;
+            } else {
+                error = ERROR_CHARACTER;
+                position = i;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return mask of the parsed cards, in the layout of CardSet
+     */
+    public long getMask() {
+        return mask;
+    }
+
+    public CardSet getCardSet() {
+        return new CardSet(mask);
+    }
+
+    /**
+     * Return number of parsed cards
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Return index (see {@link Card#intValue()}) of the i-th parsed card
+     */
+    public int getCard(int i) {
+        if (i >= count) {
+            throw new IndexOutOfBoundsException("Invalid card; i=" + i);
+        }
+        return cards[i];
+    }
+
+    /**
+     * Copy the parsed card indexes into out starting at offset
+     */
+    public void getCards(int[] out, int offset) {
+        System.arraycopy(cards, 0, out, offset, count);
+    }
+
+    /**
+     * Return end of the parsed input, or the position of the error
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Return OK or one of the ERROR codes
+     */
+    public int getError() {
+        return error;
+    }
+}
@@ -11,6 +11,23 @@ import java.util.Collection;
  * @author Cameron Zemek <grom358@gmail.com>
  */
 public final class CardSet {
+    // The 24 permutations of the suits
+    static final int[][] suitPermutations = new int[24][];
+
+    static {
+        int n = 0;
+        for (int a = 0; a < 4; ++a) {
+            for (int b = 0; b < 4; ++b) {
+                for (int c = 0; c < 4; ++c) {
+                    int d = 6 - a - b - c;
+                    if (a != b && a != c && b != c && d != a && d != b && d != c) {
+                        suitPermutations[n++] = new int[] { a, b, c, d };
+                    }
+                }
+            }
+        }
+    }
+
     private long bitset;
 
     public CardSet() {
@@ -60,10 +77,79 @@ public final class CardSet {
         return Long.bitCount(bitset);
     }
 
-    long longValue() {
+    /**
+     * Return bitset of the cards, where bit i is set for the card with
+     * index i (see {@link Card#intValue()})
+     */
+    public long longValue() {
         return bitset;
     }
 
+    static public CardSet valueOf(long mask) {
+        return new CardSet(mask);
+    }
+
+    /**
+     * Return bitset of card indexes
+     */
+    static public long mask(int... cards) {
+        long mask = 0;
+        for (int card : cards) {
+            if (card < 0 || card >= 52) {
+                throw new IllegalArgumentException("Invalid card; card=" + card);
+            }
+            mask |= 1L << card;
+        }
+        return mask;
+    }
+
+    /**
+     * Store card indexes of mask into cards, in ascending order, and return
+     * the number of cards
+     */
+    static public int toArray(long mask, int[] cards) {
+        int n = 0;
+        for (; mask != 0; mask &= mask - 1) {
+            cards[n++] = Long.numberOfTrailingZeros(mask);
+        }
+        return n;
+    }
+
+    /**
+     * Return the ranks of suit in cards as a 13 bit mask. Bit 0 is the ace
+     * and bit 12 is the deuce, the same order as {@link Card.Rank#ordinal()}.
+     */
+    static int rankMask(long cards, int suit) {
+        long x = (cards >>> suit) & 0x1111111111111L;
+        x = (x | (x >>> 3)) & 0x0303030303030303L;
+        x = (x | (x >>> 6)) & 0x000F000F000F000FL;
+        x = (x | (x >>> 12)) & 0x000000FF000000FFL;
+        x = (x | (x >>> 24)) & 0xFFFFL;
+        return (int) x;
+    }
+
+    /**
+     * Return cards with suit s replaced by permutation[s]
+     */
+    static long permuteSuits(long cards, int[] permutation) {
+        return ((cards & 0x1111111111111L) << permutation[0]) |
+                ((cards >>> 1 & 0x1111111111111L) << permutation[1]) |
+                ((cards >>> 2 & 0x1111111111111L) << permutation[2]) |
+                ((cards >>> 3 & 0x1111111111111L) << permutation[3]);
+    }
+
+    /**
+     * Return card mask for ranks of suit. Inverse of {@link #rankMask(long, int)}
+     */
+    static long suitMask(int ranks, int suit) {
+        long x = ranks & 0x1FFFL;
+        x = (x | (x << 24)) & 0x000000FF000000FFL;
+        x = (x | (x << 12)) & 0x000F000F000F000FL;
+        x = (x | (x << 6)) & 0x0303030303030303L;
+        x = (x | (x << 3)) & 0x1111111111111L;
+        return x << suit;
+    }
+
     private int nextSetBit(int fromIndex) {
         long mask = 0xffffffffffffffffL << fromIndex;
         long word = bitset & mask;
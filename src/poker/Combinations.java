@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The k card subsets of a deck, as card masks in the layout of {@link CardSet}.
+ *
+ * Subsets are in colexicographic order of the positions of their cards in
+ * the deck. Stepping to the next subset uses Gosper's hack on the positions
+ * and only moves the cards that changed, so iterating does not allocate.
+ * The n-th subset can be computed directly, which is what the spliterator
+ * uses to split the subsets evenly across threads.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class Combinations {
+    static private final long[][] binomials = new long[53][53];
+
+    static {
+        for (int n = 0; n < binomials.length; ++n) {
+            binomials[n][0] = 1;
+            for (int k = 1; k <= n; ++k) {
+                binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+            }
+        }
+    }
+
+    private final long deck;
+    private final int[] cards;
+    private final int k;
+    private final long size;
+
+    public Combinations(CardSet deck, int k) {
+        this(deck.longValue(), k);
+    }
+
+    /**
+     * @param deck Mask of the cards to choose from
+     * @param k Number of cards in each subset
+     */
+    public Combinations(long deck, int k) {
+        int n = Long.bitCount(deck);
+        if (k < 0 || k > n) {
+            throw new IllegalArgumentException("Invalid subset size; k=" + k);
+        }
+        this.deck = deck;
+        this.cards = EquityEnumerator.deck(deck);
+        this.k = k;
+        this.size = binomials[n][k];
+    }
+
+    /**
+     * Return number of ways to choose k of n cards
+     */
+    static public long choose(int n, int k) {
+        return k < 0 || k > n ? 0 : binomials[n][k];
+    }
+
+    public CardSet getDeck() {
+        return new CardSet(deck);
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Return number of subsets
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Return the index-th subset
+     */
+    public long get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Invalid index; index=" + index);
+        }
+        return expand(unrank(index));
+    }
+
+    /**
+     * Return index of subset. Inverse of {@link #get(long)}
+     */
+    public long indexOf(long subset) {
+        if (Long.bitCount(subset) != k || (subset & ~deck) != 0) {
+            return -1;
+        }
+        long index = 0;
+        for (int i = 0, j = 1; i < cards.length; ++i) {
+            if ((subset & 1L << cards[i]) != 0) {
+                index += binomials[i][j++];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Return positions of the cards of the index-th subset
+     */
+    private long unrank(long index) {
+        long positions = 0;
+        int p = cards.length;
+        for (int j = k; j > 0; --j) {
+            do {
+                p--;
+            } while (binomials[p][j] > index);
+            index -= binomials[p][j];
+            positions |= 1L << p;
+        }
+        return positions;
+    }
+
+    private long expand(long positions) {
+        long mask = 0;
+        for (; positions != 0; positions &= positions - 1) {
+            mask |= 1L << cards[Long.numberOfTrailingZeros(positions)];
+        }
+        return mask;
+    }
+
+    /**
+     * Return positions of the next subset in colex order
+     */
+    static private long successor(long positions) {
+        long c = positions & -positions;
+        long r = positions + c;
+        return (((r ^ positions) >>> 2) / c) | r;
+    }
+
+    /**
+     * Pass every subset to action
+     */
+    public void forEach(LongConsumer action) {
+        forEach(0, size, action);
+    }
+
+    /**
+     * Pass the subsets from index (inclusive) to end (exclusive) to action
+     */
+    public void forEach(long index, long end, LongConsumer action) {
+        if (index < 0 || end > size || index > end) {
+            throw new IndexOutOfBoundsException("Invalid range; index=" + index + ", end=" + end);
+        }
+        if (index == end) {
+            return;
+        }
+        long positions = unrank(index);
+        long mask = expand(positions);
+        action.accept(mask);
+        for (long i = index + 1; i < end; ++i) {
+            long next = successor(positions);
+            mask ^= expand(positions ^ next);
+            positions = next;
+            action.accept(mask);
+        }
+    }
+
+    public PrimitiveIterator.OfLong iterator() {
+        return new Cursor(0, size);
+    }
+
+    public Spliterator.OfLong spliterator() {
+        return new Cursor(0, size);
+    }
+
+    public LongStream stream() {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    public LongStream parallelStream() {
+        return StreamSupport.longStream(spliterator(), true);
+    }
+
+    /**
+     * Iterates the subsets from index to end, splitting at the middle index
+     */
+    private final class Cursor implements PrimitiveIterator.OfLong, Spliterator.OfLong {
+        private long index;
+        private final long end;
+        private long positions;
+        private long mask;
+        private boolean started;
+
+        Cursor(long index, long end) {
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < end;
+        }
+
+        @Override
+        public long nextLong() {
+            if (index >= end) {
+                throw new NoSuchElementException();
+            }
+            if (!started) {
+                positions = unrank(index);
+                mask = expand(positions);
+                started = true;
+            } else {
+                long next = successor(positions);
+                mask ^= expand(positions ^ next);
+                positions = next;
+            }
+            index++;
+            return mask;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(nextLong());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            while (index < end) {
+                action.accept(nextLong());
+            }
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Long> action) {
+            while (index < end) {
+                action.accept(nextLong());
+            }
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            long mid = (index + end) >>> 1;
+            if (mid <= index || started) {
+                return null;
+            }
+            Cursor prefix = new Cursor(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
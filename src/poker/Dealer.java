@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Deals cards from a deck without allocating.
+ *
+ * The deck is an array of card indexes and each card is dealt by a step of
+ * a Fisher-Yates shuffle, so only the cards dealt are shuffled. Starting a
+ * new hand does not restore the order of the deck, since the shuffle is
+ * uniform from any starting order. Given the same random generator and
+ * sequence of calls the same cards are dealt, and dealers for parallel
+ * simulations are split from one seeded dealer so they can be replayed.
+ *
+ * Cards are dealt as indexes (see {@link Card#intValue()}) or bitsets (see
+ * {@link CardSet#longValue()}). A Dealer is not safe to use from multiple
+ * threads.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class Dealer {
+    private final RandomGenerator random;
+    private final byte[] deck = new byte[52];
+    private long dead;
+    private int size;
+    private int dealt;
+
+    /**
+     * Create dealer using a {@link SplittableRandom} with seed
+     */
+    public Dealer(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    public Dealer(RandomGenerator random) {
+        this(random, 0);
+    }
+
+    /**
+     * @param dead Bitset of cards that are never dealt
+     */
+    public Dealer(RandomGenerator random, long dead) {
+        this.random = random;
+        setDead(dead);
+    }
+
+    /**
+     * Set the cards that are never dealt and start a new hand
+     */
+    public void setDead(long dead) {
+        if ((dead & ~EquityEnumerator.DECK_MASK) != 0) {
+            throw new IllegalArgumentException("Invalid dead cards; dead=" + dead);
+        }
+        this.dead = dead;
+        size = 0;
+        for (long cards = EquityEnumerator.DECK_MASK & ~dead; cards != 0; cards &= cards - 1) {
+            deck[size++] = (byte) Long.numberOfTrailingZeros(cards);
+        }
+        dealt = 0;
+    }
+
+    public long getDead() {
+        return dead;
+    }
+
+    /**
+     * Return every dealt card to the deck
+     */
+    public void shuffle() {
+        dealt = 0;
+    }
+
+    /**
+     * Return number of cards left to deal
+     */
+    public int remaining() {
+        return size - dealt;
+    }
+
+    /**
+     * Return bitset of the cards dealt since the last shuffle
+     */
+    public long getDealt() {
+        long cards = 0;
+        for (int i = 0; i < dealt; ++i) {
+            cards |= 1L << deck[i];
+        }
+        return cards;
+    }
+
+    /**
+     * Deal one card and return its index
+     */
+    public int deal() {
+        if (dealt == size) {
+            throw new IllegalStateException("No cards left to deal");
+        }
+        int r = dealt + random.nextInt(size - dealt);
+        byte card = deck[r];
+        deck[r] = deck[dealt];
+        deck[dealt++] = card;
+        return card;
+    }
+
+    /**
+     * Deal n cards and return their bitset
+     */
+    public long deal(int n) {
+        if (n > size - dealt) {
+            throw new IllegalStateException("Not enough cards left to deal; n=" + n);
+        }
+        long cards = 0;
+        for (int i = 0; i < n; ++i) {
+            cards |= 1L << deal();
+        }
+        return cards;
+    }
+
+    /**
+     * Deal n cards into each element of hands
+     */
+    public void deal(long[] hands, int n) {
+        if ((long) n * hands.length > size - dealt) {
+            throw new IllegalStateException("Not enough cards left to deal; n=" + n);
+        }
+        for (int i = 0; i < hands.length; ++i) {
+            hands[i] = deal(n);
+        }
+    }
+
+    /**
+     * Deal two cards and return the pocket packed by {@link Pocket#pack(int, int)}
+     */
+    public int dealPocket() {
+        int first = deal();
+        return Pocket.pack(first, deal());
+    }
+
+    /**
+     * Return a new dealer with the same dead cards and a random generator
+     * split from this one's. The random generator must be a
+     * {@link RandomGenerator.SplittableGenerator}.
+     */
+    public Dealer split() {
+        if (!(random instanceof RandomGenerator.SplittableGenerator)) {
+            throw new UnsupportedOperationException("Random generator is not splittable");
+        }
+        return new Dealer(((RandomGenerator.SplittableGenerator) random).split(), dead);
+    }
+}
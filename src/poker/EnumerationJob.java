@@ -0,0 +1,253 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Exhaustive evaluation of every k card subset of a deck, split into shards
+ * that can run in separate processes and survive restarts.
+ *
+ * The subsets are numbered by their index in {@link Combinations} and shard
+ * i of n evaluates the i-th of n equal ranges of indexes. Each subset plus
+ * the fixed cards is evaluated and counted in a histogram by
+ * {@link HandRank}. A shard periodically saves its progress and histogram
+ * to a checkpoint file in the job directory, replacing the previous one with
+ * an atomic move, and running a shard again resumes from its checkpoint.
+ * Once every shard is complete their histograms are merged.
+ *
+ * Shard 0 of 4 of every 7 card hand is run with:
+ * java poker.EnumerationJob run jobdir 4 0
+ * and once all 4 are done the results are merged with:
+ * java poker.EnumerationJob merge jobdir 4
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class EnumerationJob {
+    static private final int MAGIC = 0x454E554D; // ENUM
+    static private final int VERSION = 1;
+    static private final int CHUNK_SIZE = 1 << 20;
+    static private final long DEFAULT_CHECKPOINT_MILLIS = 10000;
+
+    private final long deck;
+    private final int k;
+    private final long fixed;
+    private final int shards;
+    private final Path directory;
+    private final Combinations combinations;
+    private long checkpointMillis = DEFAULT_CHECKPOINT_MILLIS;
+
+    /**
+     * @param deck Cards to choose the subsets from
+     * @param k Number of cards in each subset
+     * @param fixed Cards added to every subset, eg. a pocket to evaluate all its runouts
+     * @param shards Number of shards to split the job into
+     * @param directory Directory of the checkpoint files
+     */
+    public EnumerationJob(CardSet deck, int k, CardSet fixed, int shards, Path directory) {
+        this.deck = deck.longValue();
+        this.k = k;
+        this.fixed = fixed.longValue();
+        if ((this.deck & this.fixed) != 0) {
+            throw new IllegalArgumentException("Fixed cards are in the deck");
+        }
+        if (k + Long.bitCount(this.fixed) < 5) {
+            throw new IllegalArgumentException("Hands must have at least 5 cards");
+        }
+        if (shards < 1) {
+            throw new IllegalArgumentException("Invalid number of shards; shards=" + shards);
+        }
+        this.shards = shards;
+        this.directory = directory;
+        this.combinations = new Combinations(this.deck, k);
+    }
+
+    /**
+     * Return job over every hand of k cards, eg. the 133784560 7 card hands
+     */
+    static public EnumerationJob allHands(int k, int shards, Path directory) {
+        return new EnumerationJob(CardSet.valueOf(EquityEnumerator.DECK_MASK), k, new CardSet(),
+                shards, directory);
+    }
+
+    /**
+     * Set how often a running shard saves a checkpoint
+     */
+    public void setCheckpointInterval(long millis) {
+        this.checkpointMillis = millis;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Return first subset index of shard
+     */
+    public long getStart(int shard) {
+        return combinations.size() * shard / shards;
+    }
+
+    /**
+     * Return index after the last subset of shard
+     */
+    public long getEnd(int shard) {
+        return getStart(shard + 1);
+    }
+
+    public Path getCheckpoint(int shard) {
+        return directory.resolve("shard-" + shard + "-of-" + shards + ".ckpt");
+    }
+
+    /**
+     * Run shard to completion, resuming from its checkpoint if there is one
+     */
+    public void run(int shard) throws IOException {
+        run(shard, Long.MAX_VALUE);
+    }
+
+    /**
+     * Run at most limit subsets of shard, resuming from its checkpoint if
+     * there is one, and save a checkpoint before returning.
+     *
+     * @return whether the shard is complete
+     */
+    public boolean run(int shard, long limit) throws IOException {
+        if (shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("Invalid shard; shard=" + shard);
+        }
+        long[] histogram = new long[HandRank.COUNT + 1];
+        long next = read(shard, histogram);
+        long end = getEnd(shard);
+        long stop = end - next > limit ? next + limit : end;
+        long lastCheckpoint = System.currentTimeMillis();
+        while (next < stop) {
+            long chunkEnd = Math.min(stop, next + CHUNK_SIZE);
+            combinations.forEach(next, chunkEnd,
+                    cards -> histogram[HandRank.rank(Hand.fastEval(cards | fixed))]++);
+            next = chunkEnd;
+            if (System.currentTimeMillis() - lastCheckpoint >= checkpointMillis) {
+                write(shard, next, histogram);
+                lastCheckpoint = System.currentTimeMillis();
+            }
+        }
+        write(shard, next, histogram);
+        return next == end;
+    }
+
+    /**
+     * Return whether the checkpoint of shard shows it is complete
+     */
+    public boolean isComplete(int shard) throws IOException {
+        return read(shard, new long[HandRank.COUNT + 1]) == getEnd(shard);
+    }
+
+    /**
+     * Return histogram of every shard added together, where element i is
+     * the number of hands with {@link HandRank} i
+     *
+     * @throws IllegalStateException if a shard is not complete
+     */
+    public long[] merge() throws IOException {
+        long[] total = new long[HandRank.COUNT + 1];
+        long[] histogram = new long[HandRank.COUNT + 1];
+        for (int shard = 0; shard < shards; ++shard) {
+            if (read(shard, histogram) != getEnd(shard)) {
+                throw new IllegalStateException("Shard is not complete; shard=" + shard);
+            }
+            EquityEnumerator.add(total, histogram);
+        }
+        return total;
+    }
+
+    /**
+     * Read checkpoint of shard into histogram and return the next index to
+     * evaluate, or the start of the shard if there is no checkpoint
+     */
+    private long read(int shard, long[] histogram) throws IOException {
+        Arrays.fill(histogram, 0);
+        Path path = getCheckpoint(shard);
+        if (!Files.exists(path)) {
+            return getStart(shard);
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                throw new IOException("Not a checkpoint file; path=" + path);
+            }
+            if (data.readLong() != deck || data.readInt() != k || data.readLong() != fixed ||
+                    data.readInt() != shards || data.readInt() != shard) {
+                throw new IOException("Checkpoint is for a different job; path=" + path);
+            }
+            long next = data.readLong();
+            if (next < getStart(shard) || next > getEnd(shard)) {
+                throw new IOException("Invalid checkpoint; path=" + path);
+            }
+            for (int i = 0; i < histogram.length; ++i) {
+                histogram[i] = data.readLong();
+            }
+            return next;
+        }
+    }
+
+    private void write(int shard, long next, long[] histogram) throws IOException {
+        Files.createDirectories(directory);
+        Path path = getCheckpoint(shard);
+        Path temp = directory.resolve(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream data = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)));
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeLong(deck);
+            data.writeInt(k);
+            data.writeLong(fixed);
+            data.writeInt(shards);
+            data.writeInt(shard);
+            data.writeLong(next);
+            for (long count : histogram) {
+                data.writeLong(count);
+            }
+            data.flush();
+            // The checkpoint must be on disk before it replaces the previous one
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static public void main(String[] args) throws IOException {
+        if (args.length == 4 && args[0].equals("run")) {
+            EnumerationJob job = allHands(7, Integer.parseInt(args[2]), Paths.get(args[1]));
+            job.run(Integer.parseInt(args[3]));
+        } else if (args.length == 3 && args[0].equals("merge")) {
+            EnumerationJob job = allHands(7, Integer.parseInt(args[2]), Paths.get(args[1]));
+            long[] histogram = job.merge();
+            long[] categories = new long[Hand.Category.values().length];
+            for (int rank = 1; rank < histogram.length; ++rank) {
+                categories[HandRank.category(rank).ordinal()] += histogram[rank];
+            }
+            for (Hand.Category category : Hand.Category.values()) {
+                System.out.println(category + " " + categories[category.ordinal()]);
+            }
+        } else {
+            System.err.println("Usage: java poker.EnumerationJob run <directory> <shards> <shard>");
+            System.err.println("       java poker.EnumerationJob merge <directory> <shards>");
+            System.exit(1);
+        }
+    }
+}
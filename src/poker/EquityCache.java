@@ -0,0 +1,372 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of Texas Hold'em equity results, in memory and optionally on disk.
+ *
+ * Results are keyed by the pockets, board and dead cards with the suits
+ * permuted to the smallest encoding, so spots that only differ by suits
+ * share an entry. The memory tier is a least recently used map split into
+ * stripes that are locked separately. The disk tier is a file that results
+ * are only ever appended to, with an index of the position of each key that
+ * is rebuilt by reading the file when it is opened. The file starts with a
+ * magic number and format version, and opening any other file fails. A
+ * record that runs past the end of the file, because it was only partly
+ * written when the process died, is dropped. Any other corrupt record fails
+ * the open and the file is left as it is.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class EquityCache implements Closeable {
+    static private final int STRIPES = 16;
+    static private final int MAGIC = 0x45514341; // EQCA
+    static private final int VERSION = 1;
+    static private final int HEADER = 8;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final FileChannel file;
+    private final Map<Key, Long> index = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a cache that is only in memory
+     *
+     * @param capacity Maximum number of results kept in memory
+     */
+    public EquityCache(int capacity) {
+        if (capacity < STRIPES) {
+            throw new IllegalArgumentException("Invalid capacity; capacity=" + capacity);
+        }
+        for (int i = 0; i < STRIPES; ++i) {
+            stripes[i] = new Stripe(capacity / STRIPES);
+        }
+        this.file = null;
+    }
+
+    /**
+     * Create a cache that also keeps every result in file
+     */
+    public EquityCache(int capacity, Path path) throws IOException {
+        if (capacity < STRIPES) {
+            throw new IllegalArgumentException("Invalid capacity; capacity=" + capacity);
+        }
+        for (int i = 0; i < STRIPES; ++i) {
+            stripes[i] = new Stripe(capacity / STRIPES);
+        }
+        this.file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            load(path);
+        } catch (IOException | RuntimeException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Suit canonical pockets, board and dead cards
+     */
+    static private final class Key {
+        final long[] cards;
+        final int hash;
+
+        Key(long[] cards) {
+            this.cards = cards;
+            this.hash = Arrays.hashCode(cards);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(cards, ((Key) o).cards);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Least recently used map
+     */
+    static private final class Stripe extends LinkedHashMap<Key, EquityResult> {
+        static private final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, EquityResult> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * Return key of the hands followed by board and dead cards, with suits
+     * permuted to the smallest encoding
+     */
+    static private Key key(long[] hands, long board, long dead) {
+        long[] best = null;
+        long[] cards = new long[hands.length + 2];
+        for (int[] permutation : CardSet.suitPermutations) {
+            for (int i = 0; i < hands.length; ++i) {
+                cards[i] = CardSet.permuteSuits(hands[i], permutation);
+            }
+            cards[hands.length] = CardSet.permuteSuits(board, permutation);
+            cards[hands.length + 1] = CardSet.permuteSuits(dead, permutation);
+            if (best == null || Arrays.compare(cards, best) < 0) {
+                best = cards.clone();
+            }
+        }
+        return new Key(best);
+    }
+
+    private Stripe stripe(Key key) {
+        return stripes[(key.hash ^ (key.hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Return cached result or null if there is none
+     */
+    public EquityResult get(List<Pocket> pockets, CardSet board, CardSet dead) {
+        long[] hands = EquityEnumerator.pocketMasks(pockets, board.longValue(), dead.longValue());
+        return get(key(hands, board.longValue(), dead.longValue()));
+    }
+
+    private EquityResult get(Key key) {
+        Stripe stripe = stripe(key);
+        EquityResult result;
+        synchronized (stripe) {
+            result = stripe.get(key);
+        }
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        Long position = index.get(key);
+        if (position != null) {
+            try {
+                result = read(position, null);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to read equity cache", ex);
+            }
+            synchronized (stripe) {
+                stripe.put(key, result);
+            }
+            diskHits.increment();
+            return result;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(List<Pocket> pockets, CardSet board, CardSet dead, EquityResult result) {
+        long[] hands = EquityEnumerator.pocketMasks(pockets, board.longValue(), dead.longValue());
+        if (result.getPlayerCount() != hands.length) {
+            throw new IllegalArgumentException("Result is for a different number of players");
+        }
+        put(key(hands, board.longValue(), dead.longValue()), result);
+    }
+
+    private void put(Key key, EquityResult result) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.put(key, result);
+        }
+        if (file != null && !index.containsKey(key)) {
+            try {
+                append(key, result);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to write equity cache", ex);
+            }
+        }
+    }
+
+    /**
+     * Return cached result, or enumerate it and add it to the cache
+     */
+    public EquityResult enumerate(List<Pocket> pockets, CardSet board, CardSet dead) {
+        long[] hands = EquityEnumerator.pocketMasks(pockets, board.longValue(), dead.longValue());
+        Key key = key(hands, board.longValue(), dead.longValue());
+        EquityResult result = get(key);
+        if (result == null) {
+            result = EquityEnumerator.enumerate(pockets, board, dead);
+            put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Return number of lookups found in memory
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Return number of lookups found on disk but not in memory
+     */
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Return number of results on disk
+     */
+    public int getDiskSize() {
+        return index.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    // Header: magic, version
+    // Record: length, crc, players, cards of the key then the counts
+
+    private synchronized void append(Key key, EquityResult result) throws IOException {
+        if (index.containsKey(key)) {
+            return;
+        }
+        long[] counts = result.getCounts();
+        int length = 4 + 8 * (key.cards.length + counts.length);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + length);
+        buffer.putInt(length);
+        buffer.putInt(0);
+        buffer.putInt(result.getPlayerCount());
+        for (long cards : key.cards) {
+            buffer.putLong(cards);
+        }
+        for (long count : counts) {
+            buffer.putLong(count);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, length);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        long position = file.size();
+        while (buffer.hasRemaining()) {
+            file.write(buffer, position + buffer.position());
+        }
+        index.put(key, position);
+    }
+
+    /**
+     * Read the record at position, storing its key in keys if not null
+     */
+    private EquityResult read(long position, Key[] keys) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(header, position);
+        int length = header.getInt(0);
+        if (length < 4 || position + 8 + length > file.size()) {
+            throw new IOException("Truncated record");
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(body, position + 8);
+        body.flip();
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, length);
+        if ((int) crc.getValue() != header.getInt(4)) {
+            throw new IOException("Corrupt record");
+        }
+        int players = body.getInt();
+        if (players < EquityEnumerator.MIN_PLAYERS || players > EquityEnumerator.MAX_PLAYERS ||
+                length != 4 + 8 * (players + 2 + players * (players + 1))) {
+            throw new IOException("Corrupt record");
+        }
+        long[] cards = new long[players + 2];
+        for (int i = 0; i < cards.length; ++i) {
+            cards[i] = body.getLong();
+        }
+        long[] counts = new long[players * (players + 1)];
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = body.getLong();
+        }
+        if (keys != null) {
+            keys[0] = new Key(cards);
+        }
+        return new EquityResult(players, counts);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated record");
+            }
+        }
+    }
+
+    /**
+     * Check or write the header and rebuild the index, dropping a partly
+     * written record at the end
+     */
+    private void load(Path path) throws IOException {
+        long size = file.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        if (size == 0) {
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) {
+                file.write(header, header.position());
+            }
+            return;
+        }
+        if (size < HEADER) {
+            throw new IOException("Not an equity cache; path=" + path);
+        }
+        readFully(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not an equity cache; path=" + path);
+        }
+
+        long position = HEADER;
+        Key[] key = new Key[1];
+        ByteBuffer length = ByteBuffer.allocate(4);
+        // Stop at a record whose header or body runs past the end of the file
+        while (position + 8 <= size) {
+            length.clear();
+            readFully(length, position);
+            if (position + 8 + length.getInt(0) > size) {
+                break;
+            }
+            try {
+                read(position, key);
+            } catch (IOException ex) {
+                throw new IOException("Corrupt record; path=" + path + ", position=" + position, ex);
+            }
+            index.put(key[0], position);
+            position += 8 + length.getInt(0);
+        }
+        if (position < size) {
+            file.truncate(position);
+        }
+    }
+}
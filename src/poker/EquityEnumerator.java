@@ -0,0 +1,234 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Exact all-in equity by enumerating every remaining runout of the board.
+ *
+ * The runouts are split between fork/join tasks by their first undealt card.
+ * Games other than Texas Hold'em are enumerated by passing a
+ * {@link HandEvaluator}, eg. {@link OmahaEvaluator#OMAHA}.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class EquityEnumerator {
+    static public final int MIN_PLAYERS = 2;
+    static public final int MAX_PLAYERS = 10;
+
+    static final long DECK_MASK = 0xFFFFFFFFFFFFFL;
+
+    private EquityEnumerator() {
+    }
+
+    static public EquityResult enumerate(List<Pocket> pockets) {
+        return enumerate(pockets, new CardSet(), new CardSet());
+    }
+
+    static public EquityResult enumerate(List<Pocket> pockets, CardSet board) {
+        return enumerate(pockets, board, new CardSet());
+    }
+
+    static public EquityResult enumerate(List<Pocket> pockets, CardSet board, CardSet dead) {
+        return enumerate(pockets, board, dead, ForkJoinPool.commonPool());
+    }
+
+    static public EquityResult enumerate(List<Pocket> pockets, CardSet board, CardSet dead,
+            ForkJoinPool pool) {
+        long boardMask = board.longValue();
+        long deadMask = dead.longValue();
+        long[] hands = pocketMasks(pockets, boardMask, deadMask);
+        return enumerate(HandEvaluator.HOLDEM, hands, boardMask, deadMask, pool);
+    }
+
+    static public EquityResult enumerate(HandEvaluator evaluator, List<CardSet> hands,
+            CardSet board, CardSet dead) {
+        return enumerate(evaluator, hands, board, dead, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Return equity of the hole cards of each player under the rules of evaluator
+     */
+    static public EquityResult enumerate(HandEvaluator evaluator, List<CardSet> hands,
+            CardSet board, CardSet dead, ForkJoinPool pool) {
+        long boardMask = board.longValue();
+        long deadMask = dead.longValue();
+        long[] masks = new long[hands.size()];
+        for (int i = 0; i < masks.length; ++i) {
+            masks[i] = hands.get(i).longValue();
+        }
+        checkHands(evaluator, masks, boardMask, deadMask);
+        return enumerate(evaluator, masks, boardMask, deadMask, pool);
+    }
+
+    static private EquityResult enumerate(HandEvaluator evaluator, long[] hands, long boardMask,
+            long deadMask, ForkJoinPool pool) {
+        if (Instrument.ENABLED) {
+            long start = Instrument.startJob(Instrument.Site.ENUMERATE);
+            EquityResult result = run(evaluator, hands, boardMask, deadMask, pool);
+            Instrument.equity(Instrument.Site.ENUMERATE, start, hands.length, boardMask, result);
+            return result;
+        }
+        return run(evaluator, hands, boardMask, deadMask, pool);
+    }
+
+    static private EquityResult run(HandEvaluator evaluator, long[] hands, long boardMask,
+            long deadMask, ForkJoinPool pool) {
+        int[] deck = deck(evaluator.getDeck() & ~boardMask & ~deadMask & ~union(hands));
+        int k = 5 - Long.bitCount(boardMask);
+        if (k == 0) {
+            long[] counts = new long[hands.length * (hands.length + 1)];
+            showdown(evaluator, hands, boardMask, counts);
+            return new EquityResult(hands.length, counts);
+        }
+        long[] counts = pool.invoke(new Task(evaluator, hands, boardMask, deck, k, 0, deck.length - k + 1));
+        return new EquityResult(hands.length, counts);
+    }
+
+    /**
+     * Return card masks of pockets after checking no card is used twice
+     */
+    static long[] pocketMasks(List<Pocket> pockets, long board, long dead) {
+        long[] hands = new long[pockets.size()];
+        for (int i = 0; i < hands.length; ++i) {
+            Pocket pocket = pockets.get(i);
+            hands[i] = pocket.getFirst().longValue() | pocket.getSecond().longValue();
+        }
+        checkHands(HandEvaluator.HOLDEM, hands, board, dead);
+        return hands;
+    }
+
+    /**
+     * Check the hands have the right number of cards, no card is used twice
+     * and enough cards are left to complete the board
+     */
+    static void checkHands(HandEvaluator evaluator, long[] hands, long board, long dead) {
+        if (hands.length < MIN_PLAYERS || hands.length > MAX_PLAYERS) {
+            throw new IllegalArgumentException("Number of players must be between "
+                    + MIN_PLAYERS + " and " + MAX_PLAYERS);
+        }
+        if (Long.bitCount(board) > 5) {
+            throw new IllegalArgumentException("Board has more than 5 cards");
+        }
+        if ((board & dead) != 0) {
+            throw new IllegalArgumentException("Board contains dead card");
+        }
+        if ((board & ~evaluator.getDeck()) != 0) {
+            throw new IllegalArgumentException("Board contains card not in deck");
+        }
+        long used = board | dead;
+        for (int i = 0; i < hands.length; ++i) {
+            if (Long.bitCount(hands[i]) != evaluator.getHoleCards() ||
+                    (hands[i] & ~evaluator.getDeck()) != 0) {
+                throw new IllegalArgumentException("Invalid cards in pocket " + i);
+            }
+            if ((used & hands[i]) != 0) {
+                throw new IllegalArgumentException("Duplicate card in pocket " + i);
+            }
+            used |= hands[i];
+        }
+        if (Long.bitCount(evaluator.getDeck() & ~used) < 5 - Long.bitCount(board)) {
+            throw new IllegalArgumentException("Not enough cards left to complete the board");
+        }
+    }
+
+    static long union(long[] hands) {
+        long cards = 0;
+        for (long hand : hands) {
+            cards |= hand;
+        }
+        return cards;
+    }
+
+    /**
+     * Return card indexes in mask, in ascending order
+     */
+    static int[] deck(long mask) {
+        int[] deck = new int[Long.bitCount(mask)];
+        for (int i = 0; mask != 0; mask &= mask - 1) {
+            deck[i++] = Long.numberOfTrailingZeros(mask);
+        }
+        return deck;
+    }
+
+    /**
+     * Evaluate each hand with board and add the result to counts
+     */
+    static void showdown(HandEvaluator evaluator, long[] hands, long board, long[] counts) {
+        int best = -1;
+        int winners = 0;
+        for (int i = 0; i < hands.length; ++i) {
+            int value = evaluator.eval(hands[i], board);
+            if (value > best) {
+                best = value;
+                winners = 1 << i;
+            } else if (value == best) {
+                winners |= 1 << i;
+            }
+        }
+        int ways = Integer.bitCount(winners);
+        for (int i = 0, stride = hands.length + 1; i < hands.length; ++i) {
+            counts[i * stride + ((winners >>> i) & 1) * ways]++;
+        }
+    }
+
+    static void add(long[] counts, long[] other) {
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] += other[i];
+        }
+    }
+
+    /**
+     * Enumerates the runouts whose first card is in deck[lo..hi)
+     */
+    static private final class Task extends RecursiveTask<long[]> {
+        static private final long serialVersionUID = 1L;
+
+        private final HandEvaluator evaluator;
+        private final long[] hands;
+        private final long board;
+        private final int[] deck;
+        private final int k;
+        private final int lo;
+        private final int hi;
+
+        Task(HandEvaluator evaluator, long[] hands, long board, int[] deck, int k, int lo, int hi) {
+            this.evaluator = evaluator;
+            this.hands = hands;
+            this.board = board;
+            this.deck = deck;
+            this.k = k;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                Task left = new Task(evaluator, hands, board, deck, k, lo, mid);
+                left.fork();
+                long[] counts = new Task(evaluator, hands, board, deck, k, mid, hi).compute();
+                add(counts, left.join());
+                return counts;
+            }
+            long[] counts = new long[hands.length * (hands.length + 1)];
+            deal(board | (1L << deck[lo]), lo + 1, k - 1, counts);
+            return counts;
+        }
+
+        private void deal(long cards, int from, int remaining, long[] counts) {
+            if (remaining == 0) {
+                showdown(evaluator, hands, cards, counts);
+                return;
+            }
+            for (int i = from, n = deck.length - remaining; i <= n; ++i) {
+                deal(cards | (1L << deck[i]), i + 1, remaining - 1, counts);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+/**
+ * Win, tie and loss counts for each player over a set of runouts.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class EquityResult {
+    private final int players;
+    // counts[player * (players + 1) + ways] where ways is 0 for a loss,
+    // 1 for an outright win and otherwise the number of ways the pot was split
+    private final long[] counts;
+    private final long total;
+
+    EquityResult(int players, long[] counts) {
+        this.players = players;
+        this.counts = counts;
+        long sum = 0;
+        for (int ways = 0; ways <= players; ++ways) {
+            sum += counts[ways];
+        }
+        this.total = sum;
+    }
+
+    long[] getCounts() {
+        return counts;
+    }
+
+    public int getPlayerCount() {
+        return players;
+    }
+
+    /**
+     * Return number of runouts
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public long getWins(int player) {
+        return counts[player * (players + 1) + 1];
+    }
+
+    public long getTies(int player) {
+        long ties = 0;
+        for (int ways = 2; ways <= players; ++ways) {
+            ties += counts[player * (players + 1) + ways];
+        }
+        return ties;
+    }
+
+    public long getLosses(int player) {
+        return counts[player * (players + 1)];
+    }
+
+    /**
+     * Return number of runouts where player split the pot the given number of ways
+     */
+    public long getSplits(int player, int ways) {
+        if (ways < 1 || ways > players) {
+            throw new IllegalArgumentException("Invalid ways; ways=" + ways);
+        }
+        return counts[player * (players + 1) + ways];
+    }
+
+    /**
+     * Return share of the pot won by player, with split pots divided evenly
+     */
+    public double getEquity(int player) {
+        if (total == 0) {
+            return 0;
+        }
+        double share = 0;
+        for (int ways = 1; ways <= players; ++ways) {
+            share += (double) counts[player * (players + 1) + ways] / ways;
+        }
+        return share / total;
+    }
+
+    /**
+     * Return share of the pot won by player from split pots
+     */
+    public double getTieEquity(int player) {
+        if (total == 0) {
+            return 0;
+        }
+        double share = 0;
+        for (int ways = 2; ways <= players; ++ways) {
+            share += (double) counts[player * (players + 1) + ways] / ways;
+        }
+        return share / total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = 0; i < players; ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(String.format("%.4f", getEquity(i)));
+        }
+        sb.append("] (");
+        sb.append(total);
+        sb.append(')');
+        return sb.toString();
+    }
+}
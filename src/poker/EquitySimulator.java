@@ -0,0 +1,210 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates all-in equity by sampling random runouts of the board.
+ *
+ * Sampling is done by a fixed number of workers, each with its own random
+ * generator split from the seed. Workers run in rounds of a fixed number of
+ * samples and the simulation stops after the first round in which every
+ * player's equity is within the requested margin at the requested confidence.
+ * Unless the time budget runs out first, the result only depends on the seed
+ * and the number of workers.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class EquitySimulator {
+    static private final int BATCH_SIZE = 10000;
+
+    // Coefficients for quantile()
+    static private final double[] QUANTILE_A = { -3.969683028665376e+01, 2.209460984245205e+02,
+            -2.759285104469687e+02, 1.383577518672690e+02,
+            -3.066479806614716e+01, 2.506628277459239e+00 };
+    static private final double[] QUANTILE_B = { -5.447609879822406e+01, 1.615858368580409e+02,
+            -1.556989798598866e+02, 6.680131188771972e+01,
+            -1.328068155288572e+01, 1 };
+    static private final double[] QUANTILE_C = { -7.784894002430293e-03, -3.223964580411365e-01,
+            -2.400758277161838e+00, -2.549732539343734e+00,
+            4.374664141464968e+00, 2.938163982698783e+00 };
+    static private final double[] QUANTILE_D = { 7.784695709041462e-03, 3.224671290700398e-01,
+            2.445134137142996e+00, 3.754408661907416e+00, 1 };
+    static private final double QUANTILE_LOW = 0.02425;
+
+    private final long seed;
+    private final int workers;
+    private final ForkJoinPool pool;
+
+    public EquitySimulator(long seed) {
+        this(seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    public EquitySimulator(long seed, int workers) {
+        this(seed, workers, ForkJoinPool.commonPool());
+    }
+
+    public EquitySimulator(long seed, int workers, ForkJoinPool pool) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Invalid number of workers; workers=" + workers);
+        }
+        this.seed = seed;
+        this.workers = workers;
+        this.pool = pool;
+    }
+
+    /**
+     * Sample runouts until every player's equity is within margin of the true
+     * value with the given confidence, or until timeout has elapsed.
+     *
+     * @param margin Half width of the confidence interval, eg. 0.001
+     * @param confidence Confidence level, eg. 0.95
+     */
+    public EquityResult simulate(List<Pocket> pockets, CardSet board, CardSet dead,
+            double margin, double confidence, long timeout, TimeUnit unit) {
+        if (Instrument.ENABLED) {
+            long start = Instrument.startJob(Instrument.Site.SIMULATE);
+            EquityResult result = run(pockets, board, dead, margin, confidence, timeout, unit);
+            Instrument.equity(Instrument.Site.SIMULATE, start, pockets.size(), board.longValue(), result);
+            return result;
+        }
+        return run(pockets, board, dead, margin, confidence, timeout, unit);
+    }
+
+    private EquityResult run(List<Pocket> pockets, CardSet board, CardSet dead,
+            double margin, double confidence, long timeout, TimeUnit unit) {
+        if (margin <= 0) {
+            throw new IllegalArgumentException("Invalid margin; margin=" + margin);
+        }
+        if (confidence <= 0 || confidence >= 1) {
+            throw new IllegalArgumentException("Invalid confidence; confidence=" + confidence);
+        }
+        long boardMask = board.longValue();
+        long deadMask = dead.longValue();
+        long[] hands = EquityEnumerator.pocketMasks(pockets, boardMask, deadMask);
+        int k = 5 - Long.bitCount(boardMask);
+        if (k == 0) {
+            return EquityEnumerator.enumerate(pockets, board, dead);
+        }
+        long deck = EquityEnumerator.DECK_MASK & ~boardMask & ~deadMask &
+                ~EquityEnumerator.union(hands);
+
+        Dealer dealer = new Dealer(new SplittableRandom(seed), EquityEnumerator.DECK_MASK & ~deck);
+        List<Worker> tasks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; ++i) {
+            tasks.add(new Worker(hands, boardMask, k, dealer.split()));
+        }
+
+        double z = quantile(1 - (1 - confidence) / 2);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long[] counts = new long[hands.length * (hands.length + 1)];
+        while (true) {
+            List<Future<long[]>> results = pool.invokeAll(tasks);
+            try {
+                for (Future<long[]> result : results) {
+                    result.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Simulation interrupted", ex);
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Simulation failed", ex.getCause());
+            }
+            Arrays.fill(counts, 0);
+            for (Worker task : tasks) {
+                EquityEnumerator.add(counts, task.counts);
+            }
+            if (converged(hands.length, counts, z, margin) || System.nanoTime() - deadline >= 0) {
+                return new EquityResult(hands.length, counts);
+            }
+        }
+    }
+
+    static private boolean converged(int players, long[] counts, double z, double margin) {
+        long total = 0;
+        for (int ways = 0; ways <= players; ++ways) {
+            total += counts[ways];
+        }
+        for (int i = 0, stride = players + 1; i < players; ++i) {
+            // A sample is worth 1/ways of the pot to a winner
+            double mean = 0;
+            double meanSquare = 0;
+            for (int ways = 1; ways <= players; ++ways) {
+                double n = counts[i * stride + ways];
+                mean += n / ways;
+                meanSquare += n / (ways * ways);
+            }
+            mean /= total;
+            meanSquare /= total;
+            double variance = Math.max(0, meanSquare - mean * mean);
+            if (z * Math.sqrt(variance / total) > margin) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the p-th quantile of the standard normal distribution.
+     * Uses the rational approximation by Peter Acklam.
+     */
+    static double quantile(double p) {
+        if (p < QUANTILE_LOW) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return polynomial(QUANTILE_C, q) / polynomial(QUANTILE_D, q);
+        }
+        if (p > 1 - QUANTILE_LOW) {
+            return -quantile(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return polynomial(QUANTILE_A, r) * q / polynomial(QUANTILE_B, r);
+    }
+
+    static private double polynomial(double[] coefficients, double x) {
+        double result = 0;
+        for (double c : coefficients) {
+            result = result * x + c;
+        }
+        return result;
+    }
+
+    /**
+     * Samples a batch of runouts per round, accumulating into its own counts
+     */
+    static private final class Worker implements Callable<long[]> {
+        private final long[] hands;
+        private final long board;
+        private final int k;
+        private final Dealer dealer;
+        final long[] counts;
+
+        Worker(long[] hands, long board, int k, Dealer dealer) {
+            this.hands = hands;
+            this.board = board;
+            this.k = k;
+            this.dealer = dealer;
+            this.counts = new long[hands.length * (hands.length + 1)];
+        }
+
+        @Override
+        public long[] call() {
+            for (int i = 0; i < BATCH_SIZE; ++i) {
+                dealer.shuffle();
+                long cards = board | dealer.deal(k);
+                EquityEnumerator.showdown(HandEvaluator.HOLDEM, hands, cards, counts);
+            }
+            return counts;
+        }
+    }
+}
@@ -23,13 +23,16 @@ public class Hand implements Comparable<Hand> {
         STRAIGHT_FLUSH
     }
 
-    private Category category;
-    private CardList cardList;
-    private int handValue;
+    static private final Category[] categories = Category.values();
 
-    private Hand(Category category, CardList cardList, int handValue) {
+    private final Category category;
+    private final long cardMask;
+    private final int handValue;
+    private volatile CardList cardList;
+
+    private Hand(Category category, long cardMask, int handValue) {
         this.category = category;
-        this.cardList = cardList;
+        this.cardMask = cardMask;
         this.handValue = handValue;
     }
 
@@ -37,14 +40,27 @@ public class Hand implements Comparable<Hand> {
         return category;
     }
 
+    /**
+     * Return the cards making up the hand, ordered by importance. The list is
+     * built on first access.
+     */
     public CardList getCards() {
-        return cardList;
+        CardList cards = cardList;
+        if (cards == null) {
+            cards = toList(cardMask, handValue);
+            cardList = cards;
+        }
+        return cards;
     }
 
     public int getValue() {
         return handValue;
     }
 
+    long longValue() {
+        return cardMask;
+    }
+
     @Override
     public int compareTo(Hand o) {
         return o.handValue - handValue;
@@ -55,7 +71,7 @@ public class Hand implements Comparable<Hand> {
         StringBuilder sb = new StringBuilder();
         sb.append(category.toString());
         sb.append(" - ");
-        sb.append(cardList);
+        sb.append(getCards());
         sb.append(" (");
         sb.append(handValue);
         sb.append(')');
@@ -67,53 +83,90 @@ public class Hand implements Comparable<Hand> {
     static private final long SUIT_MASK = 0x1111111111111L;
     static private final long RANK_MASK = 0xFL;
 
-    static private Hand handValue(Category category, CardList cardList) {
-        int value = category.ordinal() << 4;
-        int i = 0;
-        int n = Math.min(5, cardList.size());
-        for (; i < n; ++i) {
-            Card card = cardList.get(i);
-            value = (value << 4) | card.rankValue();
+    static private int rankValue(long card) {
+        return 14 - (Long.numberOfTrailingZeros(card) >> 2);
+    }
+
+    /**
+     * Return hand made of the primary cards followed by the secondary cards
+     */
+    static private Hand handValue(Category category, long primary, long secondary) {
+        int ranks = 0;
+        for (long c = primary; c != 0; c &= c - 1) {
+            ranks = (ranks << 4) | rankValue(c);
         }
-        for (; i < 5; ++i) {
-            value <<= 4;
+        for (long c = secondary; c != 0; c &= c - 1) {
+            ranks = (ranks << 4) | rankValue(c);
         }
-        return new Hand(category, cardList, value);
+        long mask = primary | secondary;
+        int value = (category.ordinal() << 24) | (ranks << ((5 - Long.bitCount(mask)) << 2));
+        return new Hand(category, mask, value);
     }
 
-    static private Hand handValue(Category category, CardSet cardSet) {
-        return handValue(category, cardSet.toList());
+    /**
+     * Return the n highest cards
+     */
+    static private long highCards(long cards, int n) {
+        long result = 0;
+        for (; cards != 0 && n > 0; --n) {
+            long card = Long.lowestOneBit(cards);
+            result |= card;
+            cards &= ~card;
+        }
+        return result;
+    }
+
+    /**
+     * Return list of the cards in mask in the order given by the hand value
+     */
+    static private CardList toList(long mask, int value) {
+        CardList cards = new CardList(Long.bitCount(mask));
+        for (int shift = 16; shift >= 0; shift -= 4) {
+            int rank = (value >> shift) & 0xF;
+            if (rank == 0) {
+                break;
+            }
+            long card = Long.lowestOneBit(mask & (RANK_MASK << ((14 - rank) << 2)));
+            mask &= ~card;
+            cards.add(Card.valueOf(card));
+        }
+        return cards;
     }
 
     static public Hand eval(CardSet cs) {
-        long val = cs.longValue();
+        if (Instrument.ENABLED) {
+            long start = Instrument.start(Instrument.Site.EVAL);
+            Hand hand = eval(cs.longValue());
+            Instrument.end(Instrument.Site.EVAL, start, hand.getValue());
+            return hand;
+        }
+        return eval(cs.longValue());
+    }
+
+    static Hand eval(long val) {
         long test, mask;
 
         // Straight flush
         for (int i = 0, n = (Card.Rank.size * Card.Suit.size) - (4 * Card.Suit.size);
                 i < n; ++i) {
             mask = STRAIGHT_FLUSH_MASK << i;
-            test = val & mask;
-            if (test == mask) {
-                return handValue(Category.STRAIGHT_FLUSH, new CardSet(test));
+            if ((val & mask) == mask) {
+                return handValue(Category.STRAIGHT_FLUSH, mask, 0);
             }
         }
 
         // Ace low straight flush
         for (int i = 0, n = Card.Suit.size; i < n; ++i) {
             mask = ACE_LOW_STRAIGHT_FLUSH_MASK << i;
-            test = val & mask;
-            if (test == mask) {
-                CardSet handSet = new CardSet(test);
-                CardList cardList = handSet.toList();
-                cardList.add(cardList.remove(0)); // Make the ace low
-                return handValue(Category.STRAIGHT_FLUSH, cardList);
+            if ((val & mask) == mask) {
+                long ace = mask & RANK_MASK; // Make the ace low
+                return handValue(Category.STRAIGHT_FLUSH, mask & ~ace, ace);
             }
         }
 
-        CardSet threeOfKind = null;
-        CardSet topPair = null;
-        CardSet secondPair = null;
+        long threeOfKind = 0;
+        long topPair = 0;
+        long secondPair = 0;
 
         // Four of a Kind
         long spades = val & SUIT_MASK;
@@ -123,10 +176,7 @@ public class Hand implements Comparable<Hand> {
         long fourOfKind = (spades & hearts & diamonds & clubs);
         if (fourOfKind != 0) {
             mask = RANK_MASK << Long.numberOfTrailingZeros(fourOfKind);
-            CardSet kickers = new CardSet(val & ~mask);
-            CardList hand = (new CardSet(mask)).toList();
-            hand.add(kickers.toList().get(0));
-            return handValue(Category.FOUR_OF_A_KIND, hand);
+            return handValue(Category.FOUR_OF_A_KIND, mask, highCards(val & ~mask, 1));
         }
 
         // Triples & Pairs
@@ -142,35 +192,29 @@ public class Hand implements Comparable<Hand> {
             (hearts & spades);
         if (triples != 0) {
             mask = RANK_MASK << Long.numberOfTrailingZeros(triples);
-            test = val & mask;
-            threeOfKind = new CardSet(test);
+            threeOfKind = val & mask;
             sets &= ~Long.lowestOneBit(triples); // Remove triple from sets
         }
         if (sets != 0) {
             mask = RANK_MASK << Long.numberOfTrailingZeros(sets);
-            test = val & mask;
-            topPair = new CardSet(test);
+            topPair = val & mask;
             sets &= ~Long.lowestOneBit(sets); // Remove top pair from sets
         }
         if (sets != 0) {
             mask = RANK_MASK << Long.numberOfTrailingZeros(sets);
-            test = val & mask;
-            secondPair = new CardSet(test);
+            secondPair = val & mask;
         }
 
-        if (threeOfKind != null && topPair != null) {
-            CardList hand = threeOfKind.toList();
-            hand.addAll(topPair.toList());
-            return handValue(Category.FULLHOUSE, hand);
+        if (threeOfKind != 0 && topPair != 0) {
+            return handValue(Category.FULLHOUSE, threeOfKind, highCards(topPair, 2));
         }
 
         // Search for flush
         for (int i = 0, n = Card.Suit.size; i < n; ++i) {
             mask = SUIT_MASK << i;
             test = val & mask;
-            int cardCount = Long.bitCount(test);
-            if (cardCount >= 5) {
-                return handValue(Category.FLUSH, new CardSet(test));
+            if (Long.bitCount(test) >= 5) {
+                return handValue(Category.FLUSH, highCards(test, 5), 0);
             }
         }
 
@@ -188,49 +232,34 @@ public class Hand implements Comparable<Hand> {
                 straight = 0;
             }
             if (straightLength == 5) {
-                return handValue(Category.STRAIGHT, new CardSet(straight));
+                return handValue(Category.STRAIGHT, straight, 0);
             }
         }
         // Test for ace low straight
         if (straightLength == 4) {
             test = val & RANK_MASK;
             if (test != 0) {
-                straight |= Long.lowestOneBit(test);
-                CardSet handSet = new CardSet(straight);
-                CardList cardList = handSet.toList();
-                cardList.add(cardList.remove(0)); // Make the ace low
-                return handValue(Category.STRAIGHT, cardList);
+                // Make the ace low
+                return handValue(Category.STRAIGHT, straight, Long.lowestOneBit(test));
             }
         }
 
-        if (threeOfKind != null) {
-            CardList hand = threeOfKind.toList();
-            CardSet ks = new CardSet(cs);
-            ks.subtract(threeOfKind);
-            hand.addAll(ks.subList(2));
-            return handValue(Category.THREE_OF_A_KIND, hand);
+        if (threeOfKind != 0) {
+            return handValue(Category.THREE_OF_A_KIND, threeOfKind,
+                    highCards(val & ~threeOfKind, 2));
         }
 
-        if (topPair != null && secondPair != null) {
-            CardList hand = topPair.toList();
-            hand.addAll(secondPair.toList());
-            CardSet ks = new CardSet(cs);
-            ks.subtract(topPair);
-            ks.subtract(secondPair);
-            hand.addAll(ks.subList(1));
-            return handValue(Category.TWO_PAIR, hand);
+        if (topPair != 0 && secondPair != 0) {
+            return handValue(Category.TWO_PAIR, topPair | secondPair,
+                    highCards(val & ~topPair & ~secondPair, 1));
         }
 
-        if (topPair != null) {
-            CardList hand = topPair.toList();
-            CardSet ks = new CardSet(cs);
-            ks.subtract(topPair);
-            hand.addAll(ks.subList(3));
-            return handValue(Category.PAIR, hand);
+        if (topPair != 0) {
+            return handValue(Category.PAIR, topPair, highCards(val & ~topPair, 3));
         }
 
         // High card
-        return handValue(Category.HIGH_CARD, cs.subList(5));
+        return handValue(Category.HIGH_CARD, highCards(val, 5), 0);
     }
 
     static public Hand eval(Collection<Card> hand, Collection<Card> board) {
@@ -255,65 +284,104 @@ public class Hand implements Comparable<Hand> {
     static private final int STRAIGHT_FLUSH = Category.STRAIGHT_FLUSH.ordinal() << 24;
     static private final int ACE_LOW_STRAIGHT = 0x5432E;
 
-    static private int nextSetBit(long num, int fromIndex) {
-        long mask = 0xFFFFFFFFFFFFFFFFL << fromIndex;
-        long word = num & mask;
-        if (word == 0) {
-            return -1;
-        }
-        return Long.numberOfTrailingZeros(word);
-    }
-
     static private int encodeRanks(long rankMask, int n) {
         int value = 0;
-        for (int i = nextSetBit(rankMask, 0), c = 0; i >= 0 && c < n; i = nextSetBit(rankMask, i + 1), c++) {
+        for (; rankMask != 0 && n > 0; rankMask &= rankMask - 1, --n) {
             value <<= 4;
-            value |= 14 - (i >> 2);
+            value |= 14 - (Long.numberOfTrailingZeros(rankMask) >> 2);
         }
         return value;
     }
 
+    /**
+     * Return value of the highest straight in rank mask, or 0 if there is none
+     */
+    static private int straight(long ranks) {
+        long straights = ranks & (ranks >>> 4) & (ranks >>> 8) & (ranks >>> 12) & (ranks >>> 16);
+        if (straights != 0) {
+            return encodeRanks(STRAIGHT_FLUSH_MASK << Long.numberOfTrailingZeros(straights), 5);
+        }
+        if ((ranks & ACE_LOW_STRAIGHT_FLUSH_MASK) == ACE_LOW_STRAIGHT_FLUSH_MASK) {
+            return ACE_LOW_STRAIGHT;
+        }
+        return 0;
+    }
+
     static public int fastEval(CardSet cardSet) {
-        long cardMask = cardSet.longValue();
+        return fastEval(cardSet.longValue());
+    }
+
+    /**
+     * Return category of a value returned by fastEval
+     */
+    static public Category category(int value) {
+        return categories[value >>> 24];
+    }
+
+    /**
+     * Return value of the best hand in the bitset of cards, see
+     * {@link CardSet#longValue()}
+     */
+    static public int fastEval(long cardMask) {
+        if (Instrument.ENABLED) {
+            long start = Instrument.start(Instrument.Site.FAST_EVAL);
+            int value = evaluate(cardMask);
+            Instrument.end(Instrument.Site.FAST_EVAL, start, value);
+            return value;
+        }
+        return evaluate(cardMask);
+    }
+
+    static private int evaluate(long cardMask) {
         long spades = cardMask & SUIT_MASK;
         long hearts = (cardMask >> 1) & SUIT_MASK;
         long diamonds = (cardMask >> 2) & SUIT_MASK;
         long clubs = (cardMask >> 3) & SUIT_MASK;
-        long ranks = (spades | hearts | diamonds | clubs);
+        long flush = 0;
+        if (Long.bitCount(spades) >= 5) {
+            flush = spades;
+        } else if (Long.bitCount(hearts) >= 5) {
+            flush = hearts;
+        } else if (Long.bitCount(diamonds) >= 5) {
+            flush = diamonds;
+        } else if (Long.bitCount(clubs) >= 5) {
+            flush = clubs;
+        }
+        return fastEval(spades | hearts | diamonds | clubs,
+                spades & hearts & diamonds & clubs,
+                (clubs & diamonds & hearts) |
+                    (clubs & diamonds & spades) |
+                    (clubs & hearts & spades) |
+                    (diamonds & hearts & spades),
+                (clubs & diamonds) |
+                    (clubs & hearts) |
+                    (clubs & spades) |
+                    (diamonds & hearts) |
+                    (diamonds & spades) |
+                    (hearts & spades),
+                flush);
+    }
 
+    /**
+     * Evaluate a hand of at most 7 cards from its rank masks. Bit (4 * i) of
+     * each mask is for the rank with ordinal i.
+     *
+     * @param ranks Ranks of all the cards
+     * @param fourOfAKind Ranks with four cards
+     * @param triples Ranks with at least three cards
+     * @param sets Ranks with at least two cards
+     * @param flush Ranks of the suit with at least 5 cards, or 0 if none
+     */
+    static int fastEval(long ranks, long fourOfAKind, long triples, long sets, long flush) {
         // Straight flush
-        for (int i = 0; i <= 8; ++i) {
-            long handMask = (STRAIGHT_FLUSH_MASK << (i << 2));
-            if ((spades & handMask) == handMask) {
-                return STRAIGHT_FLUSH | encodeRanks(handMask, 5);
-            }
-            if ((hearts & handMask) == handMask) {
-                return STRAIGHT_FLUSH | encodeRanks(handMask, 5);
-            }
-            if ((diamonds & handMask) == handMask) {
-                return STRAIGHT_FLUSH | encodeRanks(handMask, 5);
-            }
-            if ((clubs & handMask) == handMask) {
-                return STRAIGHT_FLUSH | encodeRanks(handMask, 5);
+        if (flush != 0) {
+            int straightFlush = straight(flush);
+            if (straightFlush != 0) {
+                return STRAIGHT_FLUSH | straightFlush;
             }
         }
 
-        // Ace low straight flush
-        if ((spades & ACE_LOW_STRAIGHT_FLUSH_MASK) == ACE_LOW_STRAIGHT_FLUSH_MASK) {
-            return STRAIGHT_FLUSH | ACE_LOW_STRAIGHT;
-        }
-        if ((hearts & ACE_LOW_STRAIGHT_FLUSH_MASK) == ACE_LOW_STRAIGHT_FLUSH_MASK) {
-            return STRAIGHT_FLUSH | ACE_LOW_STRAIGHT;
-        }
-        if ((diamonds & ACE_LOW_STRAIGHT_FLUSH_MASK) == ACE_LOW_STRAIGHT_FLUSH_MASK) {
-            return STRAIGHT_FLUSH | ACE_LOW_STRAIGHT;
-        }
-        if ((clubs & ACE_LOW_STRAIGHT_FLUSH_MASK) == ACE_LOW_STRAIGHT_FLUSH_MASK) {
-            return STRAIGHT_FLUSH | ACE_LOW_STRAIGHT;
-        }
-
         // Four of a kind
-        long fourOfAKind = spades & hearts & diamonds & clubs;
         if (fourOfAKind != 0) {
             int kicker = encodeRanks(ranks & ~fourOfAKind, 1);
             int fourOfAKindRank = encodeRanks(fourOfAKind, 1);
@@ -326,18 +394,8 @@ public class Hand implements Comparable<Hand> {
         }
 
         // Fullhouse
-        long triples = (clubs & diamonds & hearts) |
-            (clubs & diamonds & spades) |
-            (clubs & hearts & spades) |
-            (diamonds & hearts & spades);
         long triple = Long.lowestOneBit(triples);
         int tripleRank = triple == 0 ? 0 : encodeRanks(triple, 1);
-        long sets = (clubs & diamonds) |
-            (clubs & hearts) |
-            (clubs & spades) |
-            (diamonds & hearts) |
-            (diamonds & spades) |
-            (hearts & spades);
         int setCount = Long.bitCount(sets);
         if (triple != 0 && setCount >= 2) {
             int topPairRank = encodeRanks(sets & ~triple, 1);
@@ -350,28 +408,14 @@ public class Hand implements Comparable<Hand> {
         }
 
         // Flush
-        if (Long.bitCount(spades) >= 5) {
-            return FLUSH | encodeRanks(spades, 5);
-        }
-        if (Long.bitCount(hearts) >= 5) {
-            return FLUSH | encodeRanks(hearts, 5);
-        }
-        if (Long.bitCount(diamonds) >= 5) {
-            return FLUSH | encodeRanks(diamonds, 5);
-        }
-        if (Long.bitCount(clubs) >= 5) {
-            return FLUSH | encodeRanks(clubs, 5);
+        if (flush != 0) {
+            return FLUSH | encodeRanks(flush, 5);
         }
 
         // Straight
-        for (int i = 0; i <= 8; ++i) {
-            long handMask = (STRAIGHT_FLUSH_MASK << (i << 2));
-            if ((ranks & handMask) == handMask) {
-                return STRAIGHT | encodeRanks(handMask, 5);
-            }
-        }
-        if ((ranks & ACE_LOW_STRAIGHT_FLUSH_MASK) == ACE_LOW_STRAIGHT_FLUSH_MASK) {
-            return STRAIGHT | ACE_LOW_STRAIGHT;
+        int straight = straight(ranks);
+        if (straight != 0) {
+            return STRAIGHT | straight;
         }
 
         // Three of kind
@@ -411,4 +455,23 @@ public class Hand implements Comparable<Hand> {
         // High Card
         return HIGH_CARD | encodeRanks(ranks, 5);
     }
+
+    static private final BatchEvaluator batchEvaluator = BatchEvaluator.create();
+
+    /**
+     * Evaluate many hands at once, storing the value of masks[i] in out[i].
+     * Uses the vector API when the jdk.incubator.vector module is present.
+     */
+    static public void evalBatch(long[] masks, int[] out) {
+        if (out.length < masks.length) {
+            throw new IllegalArgumentException("Output array is too small");
+        }
+        if (Instrument.ENABLED) {
+            long start = Instrument.startJob(Instrument.Site.EVAL_BATCH);
+            batchEvaluator.evalBatch(masks, out, masks.length);
+            Instrument.batch(start, out, masks.length);
+            return;
+        }
+        batchEvaluator.evalBatch(masks, out, masks.length);
+    }
 }
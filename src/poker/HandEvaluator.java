@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+/**
+ * Rules for evaluating a player's hole cards with the board, used by
+ * {@link EquityEnumerator} to support games other than Texas Hold'em.
+ *
+ * Cards are masks in the layout of {@link CardSet}.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public interface HandEvaluator {
+    /**
+     * Return value of the best hand made from hole and a 5 card board,
+     * where a higher value is a better hand
+     */
+    int eval(long hole, long board);
+
+    /**
+     * Return number of hole cards dealt to each player
+     */
+    int getHoleCards();
+
+    /**
+     * Return mask of the cards in the deck
+     */
+    long getDeck();
+
+    /**
+     * Return category of a value returned by {@link #eval(long, long)}
+     */
+    default Hand.Category category(int value) {
+        return Hand.category(value);
+    }
+
+    /**
+     * Texas Hold'em, the best 5 of the 2 hole cards and the board
+     */
+    static final HandEvaluator HOLDEM = new HandEvaluator() {
+        @Override
+        public int eval(long hole, long board) {
+            return Hand.fastEval(hole | board);
+        }
+
+        @Override
+        public int getHoleCards() {
+            return 2;
+        }
+
+        @Override
+        public long getDeck() {
+            return EquityEnumerator.DECK_MASK;
+        }
+    };
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps hands to a dense index that is the same for hands which only differ
+ * by a permutation of suits, and back again.
+ *
+ * A hand is dealt in rounds, eg. the pocket cards then the board, and each
+ * round is a card mask in the layout of {@link CardSet}. Suits are
+ * interchangeable as long as the cards of each round are kept apart, so
+ * indexing the pocket and the 5 card board as separate rounds gives 123156254
+ * indexes instead of the 2.7 billion ways to deal them. The index space is
+ * laid out by the number of cards each suit has in each round; the cards of
+ * a suit are ranked with the combinatorial number system, and suits with the
+ * same card counts are combined as a multiset.
+ *
+ * The algorithm is from "A Fast and Optimal Hand Isomorphism Algorithm" by
+ * Kevin Waugh.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class HandIndexer {
+    static private final int MAX_ROUNDS = 4;
+    static private final int RANKS = Card.Rank.size;
+    static private final int[][] binomials = new int[RANKS + 1][RANKS + 1];
+
+    static {
+        for (int n = 0; n <= RANKS; ++n) {
+            binomials[n][0] = 1;
+            for (int k = 1; k <= n; ++k) {
+                binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+            }
+        }
+    }
+
+    // Pocket cards and the board, created after the tables they need
+    static public final HandIndexer PREFLOP = new HandIndexer(2);
+    static public final HandIndexer FLOP = new HandIndexer(2, 3);
+    static public final HandIndexer TURN = new HandIndexer(2, 4);
+    static public final HandIndexer RIVER = new HandIndexer(2, 5);
+
+    private final int[] cards;
+    // Sorted keys of the configurations and the first index of each
+    private final long[] configurations;
+    private final long[] offsets;
+    private final long size;
+
+    /**
+     * @param cards Number of cards dealt in each round
+     */
+    public HandIndexer(int... cards) {
+        int total = 0;
+        for (int n : cards) {
+            if (n < 1) {
+                throw new IllegalArgumentException("Invalid number of cards; cards=" + n);
+            }
+            total += n;
+        }
+        if (cards.length < 1 || cards.length > MAX_ROUNDS || total > Card.Rank.size * Card.Suit.size) {
+            throw new IllegalArgumentException("Invalid rounds; rounds=" + Arrays.toString(cards));
+        }
+        this.cards = cards.clone();
+
+        // Card counts a single suit can have, in descending order
+        List<Integer> counts = new ArrayList<>();
+        addCounts(counts, 0, 0, 0);
+        int[] suits = new int[counts.size()];
+        for (int i = 0; i < suits.length; ++i) {
+            suits[i] = counts.get(i);
+        }
+
+        List<Long> keys = new ArrayList<>();
+        for (int a = 0; a < suits.length; ++a) {
+            for (int b = a; b < suits.length; ++b) {
+                for (int c = b; c < suits.length; ++c) {
+                    for (int d = c; d < suits.length; ++d) {
+                        if (isComplete(suits[a], suits[b], suits[c], suits[d])) {
+                            keys.add(key(suits[a], suits[b], suits[c], suits[d]));
+                        }
+                    }
+                }
+            }
+        }
+        configurations = new long[keys.size()];
+        for (int i = 0; i < configurations.length; ++i) {
+            configurations[i] = keys.get(i);
+        }
+        Arrays.sort(configurations);
+        offsets = new long[configurations.length];
+        long offset = 0;
+        for (int i = 0; i < configurations.length; ++i) {
+            offsets[i] = offset;
+            offset += configurationSize(configurations[i]);
+        }
+        size = offset;
+    }
+
+    private void addCounts(List<Integer> counts, int round, int count, int used) {
+        if (round == cards.length) {
+            counts.add(count);
+            return;
+        }
+        for (int n = Math.min(cards[round], RANKS - used); n >= 0; --n) {
+            addCounts(counts, round + 1, count | n << 4 * (MAX_ROUNDS - 1 - round), used + n);
+        }
+    }
+
+    private boolean isComplete(int a, int b, int c, int d) {
+        for (int round = 0; round < cards.length; ++round) {
+            if (count(a, round) + count(b, round) + count(c, round) + count(d, round) != cards[round]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return number of cards in round, given the packed counts of a suit
+     */
+    static private int count(int counts, int round) {
+        return counts >>> 4 * (MAX_ROUNDS - 1 - round) & 0xF;
+    }
+
+    static private long key(int a, int b, int c, int d) {
+        return (long) a << 48 | (long) b << 32 | (long) c << 16 | d;
+    }
+
+    static private int suitCounts(long key, int i) {
+        return (int) (key >>> 16 * (3 - i)) & 0xFFFF;
+    }
+
+    /**
+     * Return number of ways to deal the cards of a suit
+     */
+    private long suitSize(int counts) {
+        long size = 1;
+        int used = 0;
+        for (int round = 0; round < cards.length; ++round) {
+            int n = count(counts, round);
+            size *= binomials[RANKS - used][n];
+            used += n;
+        }
+        return size;
+    }
+
+    private long configurationSize(long key) {
+        long size = 1;
+        for (int i = 0; i < Card.Suit.size; ) {
+            int counts = suitCounts(key, i);
+            int k = 1;
+            while (i + k < Card.Suit.size && suitCounts(key, i + k) == counts) {
+                k++;
+            }
+            size *= multisets(suitSize(counts), k);
+            i += k;
+        }
+        return size;
+    }
+
+    /**
+     * Return number of multisets of size k from n elements
+     */
+    static private long multisets(long n, int k) {
+        return choose(n + k - 1, k);
+    }
+
+    static private long choose(long n, int k) {
+        if (n < k) {
+            return 0;
+        }
+        long result = 1;
+        for (int i = 0; i < k; ++i) {
+            result = result * (n - i) / (i + 1);
+        }
+        return result;
+    }
+
+    public int getRounds() {
+        return cards.length;
+    }
+
+    /**
+     * Return number of cards dealt in round
+     */
+    public int getCards(int round) {
+        return cards[round];
+    }
+
+    /**
+     * Return number of indexes, ie. the number of hands that are distinct
+     * under suit isomorphism
+     */
+    public long size() {
+        return size;
+    }
+
+    public long index(CardSet... rounds) {
+        long[] masks = new long[rounds.length];
+        for (int i = 0; i < rounds.length; ++i) {
+            masks[i] = rounds[i].longValue();
+        }
+        return index(masks);
+    }
+
+    public long index(long pocket, long board) {
+        return index(new long[] { pocket, board });
+    }
+
+    /**
+     * Return index of the hand
+     *
+     * @param rounds Card mask of each round
+     */
+    public long index(long[] rounds) {
+        if (rounds.length != cards.length) {
+            throw new IllegalArgumentException("Invalid number of rounds; rounds=" + rounds.length);
+        }
+        long used = 0;
+        for (int round = 0; round < rounds.length; ++round) {
+            if (Long.bitCount(rounds[round]) != cards[round] || (used & rounds[round]) != 0 ||
+                    (rounds[round] & ~EquityEnumerator.DECK_MASK) != 0) {
+                throw new IllegalArgumentException("Invalid cards in round; round=" + round);
+            }
+            used |= rounds[round];
+        }
+
+        // Sort by card counts then by index, both descending
+        long[] suits = new long[Card.Suit.size];
+        for (int suit = 0; suit < Card.Suit.size; ++suit) {
+            int counts = 0;
+            long index = 0;
+            long scale = 1;
+            int usedRanks = 0;
+            for (int round = 0; round < rounds.length; ++round) {
+                int ranks = CardSet.rankMask(rounds[round], suit);
+                int n = Integer.bitCount(ranks);
+                counts |= n << 4 * (MAX_ROUNDS - 1 - round);
+                index += scale * colex(ranks, usedRanks);
+                scale *= binomials[RANKS - Integer.bitCount(usedRanks)][n];
+                usedRanks |= ranks;
+            }
+            suits[suit] = (long) counts << 47 | index;
+        }
+        Arrays.sort(suits);
+
+        long key = 0;
+        for (int i = 0; i < Card.Suit.size; ++i) {
+            key = key << 16 | suits[Card.Suit.size - 1 - i] >>> 47;
+        }
+        int configuration = Arrays.binarySearch(configurations, key);
+
+        long index = 0;
+        long scale = 1;
+        for (int i = Card.Suit.size - 1; i >= 0; ) {
+            int counts = (int) (suits[i] >>> 47);
+            int k = 1;
+            while (i - k >= 0 && (int) (suits[i - k] >>> 47) == counts) {
+                k++;
+            }
+            // Rank the multiset with the combinatorial number system
+            long rank = 0;
+            for (int j = 0; j < k; ++j) {
+                long x = suits[i - j] & (1L << 47) - 1;
+                rank += choose(x + k - 1 - j, k - j);
+            }
+            index += scale * rank;
+            scale *= multisets(suitSize(counts), k);
+            i -= k;
+        }
+        return offsets[configuration] + index;
+    }
+
+    /**
+     * Return colex rank of ranks among the ranks not in used
+     */
+    static private int colex(int ranks, int used) {
+        int index = 0;
+        for (int i = 1; ranks != 0; ++i) {
+            int rank = Integer.numberOfTrailingZeros(ranks);
+            int position = rank - Integer.bitCount(used & (1 << rank) - 1);
+            index += binomials[position][i];
+            ranks &= ranks - 1;
+        }
+        return index;
+    }
+
+    /**
+     * Return the canonical hand of index
+     */
+    public CardSet[] unindex(long index) {
+        long[] rounds = new long[cards.length];
+        unindex(index, rounds);
+        CardSet[] sets = new CardSet[rounds.length];
+        for (int i = 0; i < rounds.length; ++i) {
+            sets[i] = new CardSet(rounds[i]);
+        }
+        return sets;
+    }
+
+    /**
+     * Store card mask of each round of the canonical hand of index into rounds
+     */
+    public void unindex(long index, long[] rounds) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("Invalid index; index=" + index);
+        }
+        if (rounds.length != cards.length) {
+            throw new IllegalArgumentException("Invalid number of rounds; rounds=" + rounds.length);
+        }
+        int configuration = Arrays.binarySearch(offsets, index);
+        if (configuration < 0) {
+            configuration = -configuration - 2;
+        }
+        long key = configurations[configuration];
+        index -= offsets[configuration];
+
+        Arrays.fill(rounds, 0);
+        for (int i = 0; i < Card.Suit.size; ) {
+            int counts = suitCounts(key, i);
+            int k = 1;
+            while (i + k < Card.Suit.size && suitCounts(key, i + k) == counts) {
+                k++;
+            }
+            long suitSize = suitSize(counts);
+            long groupSize = multisets(suitSize, k);
+            long rank = index % groupSize;
+            index /= groupSize;
+            // Largest suit index goes to the lowest suit
+            for (int j = 0; j < k; ++j) {
+                int m = k - j;
+                long lo = m - 1;
+                long hi = suitSize + m - 2;
+                while (lo < hi) {
+                    long mid = (lo + hi + 1) >>> 1;
+                    if (choose(mid, m) <= rank) {
+                        lo = mid;
+                    } else {
+                        hi = mid - 1;
+                    }
+                }
+                rank -= choose(lo, m);
+                unindexSuit(lo - (m - 1), counts, i + j, rounds);
+            }
+            i += k;
+        }
+    }
+
+    private void unindexSuit(long index, int counts, int suit, long[] rounds) {
+        int usedRanks = 0;
+        for (int round = 0; round < cards.length; ++round) {
+            int n = count(counts, round);
+            int size = binomials[RANKS - Integer.bitCount(usedRanks)][n];
+            int rank = (int) (index % size);
+            index /= size;
+            int ranks = 0;
+            for (int i = n; i > 0; --i) {
+                int position = i - 1;
+                while (position + 1 <= RANKS && binomials[position + 1][i] <= rank) {
+                    position++;
+                }
+                rank -= binomials[position][i];
+                ranks |= nthUnused(usedRanks, position);
+            }
+            rounds[round] |= CardSet.suitMask(ranks, suit);
+            usedRanks |= ranks;
+        }
+    }
+
+    /**
+     * Return bit of the n-th (from 0) rank not in used
+     */
+    static private int nthUnused(int used, int n) {
+        int free = ~used & (1 << RANKS) - 1;
+        for (int i = 0; i < n; ++i) {
+            free &= free - 1;
+        }
+        return Integer.lowestOneBit(free);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.Arrays;
+
+/**
+ * Dense ranks of the 7462 distinct hand values.
+ *
+ * Every poker hand is equal in strength to one of 7462 classes of 5 card
+ * hands. Ranks number these classes from 1, the weakest high card, to 7462,
+ * a royal flush, so they can index arrays directly where the values returned
+ * by {@link Hand#fastEval(long)} cannot.
+ *
+ * Ranks are looked up in a table keyed by the category and the nibbles of
+ * the value that tell hands of the category apart: the mask of the five
+ * ranks for high cards and flushes, otherwise the ranks of the nibbles that
+ * are not repeats, eg. the pair and the three kickers, as a base 13 number.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class HandRank {
+    static public final int COUNT = 7462;
+
+    // First rank of each category
+    static public final int HIGH_CARD = 1;
+    static public final int PAIR = 1278;
+    static public final int TWO_PAIR = 4138;
+    static public final int THREE_OF_A_KIND = 4996;
+    static public final int STRAIGHT = 5854;
+    static public final int FLUSH = 5864;
+    static public final int FULLHOUSE = 7141;
+    static public final int FOUR_OF_A_KIND = 7297;
+    static public final int STRAIGHT_FLUSH = 7453;
+
+    static private final int[] firstRanks = {
+        HIGH_CARD, PAIR, TWO_PAIR, THREE_OF_A_KIND, STRAIGHT, FLUSH, FULLHOUSE, FOUR_OF_A_KIND,
+        STRAIGHT_FLUSH, COUNT + 1
+    };
+
+    // values[rank] is the hand value of rank, values[0] is unused
+    static private final int[] values = new int[COUNT + 1];
+
+    static private final int HIGH_CARD_CATEGORY = Hand.Category.HIGH_CARD.ordinal();
+    static private final int FLUSH_CATEGORY = Hand.Category.FLUSH.ordinal();
+    // Nibbles of the value that make up the key of each category, bit 4 is
+    // the highest nibble. High cards and flushes use the rank mask instead.
+    static private final int[] keyNibbles = {
+        0, 0x17, 0x15, 0x13, 0x10, 0, 0x12, 0x11, 0x10
+    };
+    // Start of the keys of each category in ranks
+    static private final int[] keyOffsets = new int[keyNibbles.length + 1];
+    // ranks[key(value)] is the rank of value, 0 if there is no such value
+    static private final char[] ranks;
+
+    static {
+        int n = 1;
+        // Flushes and straight flushes
+        for (int ranks = 0; ranks < 1 << Card.Rank.size; ++ranks) {
+            if (Integer.bitCount(ranks) == 5) {
+                values[n++] = Hand.fastEval(CardSet.suitMask(ranks, 0));
+            }
+        }
+        fill(n, 0, 5, 0L, 0);
+        Arrays.sort(values, 1, values.length);
+
+        for (int category = 0; category < keyNibbles.length; ++category) {
+            int size = 1 << Card.Rank.size;
+            if (category != HIGH_CARD_CATEGORY && category != FLUSH_CATEGORY) {
+                size = (int) Math.pow(Card.Rank.size, Integer.bitCount(keyNibbles[category]));
+            }
+            keyOffsets[category + 1] = keyOffsets[category] + size;
+        }
+        ranks = new char[keyOffsets[keyNibbles.length]];
+        for (int rank = 1; rank <= COUNT; ++rank) {
+            ranks[key(values[rank])] = (char) rank;
+        }
+    }
+
+    private HandRank() {
+    }
+
+    /**
+     * Store values from index n of every combination of k cards over the
+     * ranks from rank, with suits rotated so the cards never make a flush.
+     * Return the next index.
+     */
+    static private int fill(int n, int rank, int k, long cards, int suit) {
+        if (k == 0) {
+            values[n] = Hand.fastEval(cards);
+            return n + 1;
+        }
+        if (rank == Card.Rank.size) {
+            return n;
+        }
+        for (int q = 0; q <= Card.Suit.size && q <= k; ++q) {
+            long rankCards = 0;
+            for (int i = 0; i < q; ++i) {
+                rankCards |= 1L << (rank * Card.Suit.size + (suit + i) % Card.Suit.size);
+            }
+            n = fill(n, rank + 1, k - q, cards | rankCards, (suit + q) % Card.Suit.size);
+        }
+        return n;
+    }
+
+    /**
+     * Return index into ranks of a valid hand value
+     */
+    static private int key(int value) {
+        int category = value >>> 24;
+        int key = 0;
+        if (category == HIGH_CARD_CATEGORY || category == FLUSH_CATEGORY) {
+            for (int shift = 0; shift < 20; shift += 4) {
+                key |= 1 << ((value >>> shift & 0xF) - 2);
+            }
+        } else {
+            int nibbles = keyNibbles[category];
+            for (int nibble = 4; nibble >= 0; --nibble) {
+                if ((nibbles & 1 << nibble) != 0) {
+                    key = key * Card.Rank.size + (value >>> (nibble << 2) & 0xF) - 2;
+                }
+            }
+        }
+        return keyOffsets[category] + key;
+    }
+
+    /**
+     * Return rank of a value returned by {@link Hand#fastEval(long)}
+     */
+    static public int rank(int value) {
+        int category = value >>> 24;
+        if (category < keyNibbles.length) {
+            int key = key(value);
+            if (key >= keyOffsets[category] && key < keyOffsets[category + 1] &&
+                    ranks[key] != 0 && values[ranks[key]] == value) {
+                return ranks[key];
+            }
+        }
+        throw new IllegalArgumentException("Invalid hand value; value=" + value);
+    }
+
+    /**
+     * Return hand value of rank. Inverse of {@link #rank(int)}
+     */
+    static public int value(int rank) {
+        if (rank < 1 || rank > COUNT) {
+            throw new IllegalArgumentException("Invalid rank; rank=" + rank);
+        }
+        return values[rank];
+    }
+
+    /**
+     * Return category of rank
+     */
+    static public Hand.Category category(int rank) {
+        return Hand.category(value(rank));
+    }
+
+    /**
+     * Return first rank of category
+     */
+    static public int firstRank(Hand.Category category) {
+        return firstRanks[category.ordinal()];
+    }
+
+    /**
+     * Return rank of the best hand in the bitset of cards
+     */
+    static public int eval(long cards) {
+        return ranks[key(Hand.fastEval(cards))];
+    }
+
+    static public int eval(CardSet cards) {
+        return eval(cards.longValue());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+/**
+ * Hand strength and potential of a pocket against one random opponent.
+ *
+ * @see HandStrengthCalculator
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class HandStrength {
+    private final double handStrength;
+    private final double positivePotential;
+    private final double negativePotential;
+    private final double handStrengthSquared;
+    private final double[] histogram;
+
+    HandStrength(double handStrength, double positivePotential, double negativePotential,
+            double handStrengthSquared, double[] histogram) {
+        this.handStrength = handStrength;
+        this.positivePotential = positivePotential;
+        this.negativePotential = negativePotential;
+        this.handStrengthSquared = handStrengthSquared;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Return HS, the share of opponent pockets beaten now with ties counting half
+     */
+    public double getHandStrength() {
+        return handStrength;
+    }
+
+    /**
+     * Return PPot, the chance of being ahead on the river when behind now
+     */
+    public double getPositivePotential() {
+        return positivePotential;
+    }
+
+    /**
+     * Return NPot, the chance of being behind on the river when ahead now
+     */
+    public double getNegativePotential() {
+        return negativePotential;
+    }
+
+    /**
+     * Return EHS, ie. HS * (1 - NPot) + (1 - HS) * PPot
+     */
+    public double getEffectiveHandStrength() {
+        return handStrength * (1 - negativePotential) + (1 - handStrength) * positivePotential;
+    }
+
+    /**
+     * Return EHS squared, the mean over the runouts of the squared river hand strength
+     */
+    public double getEffectiveHandStrengthSquared() {
+        return handStrengthSquared;
+    }
+
+    /**
+     * Return share of the runouts whose river hand strength falls in each of
+     * the equal width bins from 0 to 1
+     */
+    public double[] getHistogram() {
+        return histogram.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HS=%.4f PPot=%.4f NPot=%.4f EHS=%.4f EHS2=%.4f",
+                handStrength, positivePotential, negativePotential,
+                getEffectiveHandStrength(), handStrengthSquared);
+    }
+}
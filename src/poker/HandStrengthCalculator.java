@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Calculates {@link HandStrength} on the flop, turn or river by enumerating
+ * every opponent pocket and every runout of the board.
+ *
+ * The opponent pockets are collected once per board and their current
+ * values evaluated once, then each runout evaluates every pocket once.
+ * Results are cached by the index of the pocket and board under suit
+ * isomorphism (see {@link HandIndexer}), so the same situation with the
+ * suits permuted is only calculated once. The calculator is safe to share
+ * between threads.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class HandStrengthCalculator {
+    static public final int DEFAULT_BINS = 50;
+
+    static private final int AHEAD = 0;
+    static private final int TIED = 1;
+    static private final int BEHIND = 2;
+
+    private final int bins;
+    private final ConcurrentHashMap<Long, HandStrength> cache = new ConcurrentHashMap<>();
+
+    public HandStrengthCalculator() {
+        this(DEFAULT_BINS);
+    }
+
+    /**
+     * @param bins Number of bins in the histogram of river hand strength
+     */
+    public HandStrengthCalculator(int bins) {
+        if (bins < 1) {
+            throw new IllegalArgumentException("Invalid number of bins; bins=" + bins);
+        }
+        this.bins = bins;
+    }
+
+    public HandStrength calculate(Pocket pocket, CardSet board) {
+        return calculate(pocket.getFirst().longValue() | pocket.getSecond().longValue(),
+                board.longValue());
+    }
+
+    public HandStrength calculate(long pocket, long board) {
+        int n = Long.bitCount(board);
+        if (Long.bitCount(pocket) != 2 || n < 3 || n > 5 || (pocket & board) != 0) {
+            throw new IllegalArgumentException("Invalid pocket or board; pocket=" + new CardSet(pocket)
+                    + ", board=" + new CardSet(board));
+        }
+        HandIndexer indexer = n == 3 ? HandIndexer.FLOP : n == 4 ? HandIndexer.TURN : HandIndexer.RIVER;
+        // Board sizes have separate index spaces
+        Long key = indexer.index(pocket, board) << 2 | (n - 3);
+        HandStrength result = cache.get(key);
+        if (result == null) {
+            result = compute(pocket, board);
+            cache.putIfAbsent(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Return number of cached results
+     */
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    public void clearCache() {
+        cache.clear();
+    }
+
+    private HandStrength compute(long pocket, long board) {
+        long used = pocket | board;
+        long[] opponents = new long[Range.COMBOS];
+        int[] states = new int[Range.COMBOS];
+        int count = 0;
+        int value = Hand.fastEval(pocket | board);
+        double[] now = new double[3];
+        for (int i = 0; i < Range.COMBOS; ++i) {
+            long combo = Range.combo(i);
+            if ((combo & used) == 0) {
+                opponents[count] = combo;
+                states[count] = state(value, Hand.fastEval(combo | board));
+                now[states[count]]++;
+                count++;
+            }
+        }
+        double handStrength = (now[AHEAD] + now[TIED] / 2) / count;
+
+        int k = 5 - Long.bitCount(board);
+        // potentials[current * 3 + river] counts matchups by state now and on the river
+        double[] potentials = new double[9];
+        double[] histogram = new double[bins];
+        double squared = 0;
+        int total = 0;
+        if (k == 0) {
+            squared = handStrength * handStrength;
+            histogram[bin(handStrength)]++;
+            total = 1;
+        } else {
+            int[] river = new int[3];
+            PrimitiveIterator.OfLong runouts = new Combinations(EquityEnumerator.DECK_MASK & ~used, k).iterator();
+            while (runouts.hasNext()) {
+                long runout = runouts.nextLong();
+                long cards = board | runout;
+                int riverValue = Hand.fastEval(pocket | cards);
+                river[AHEAD] = river[TIED] = river[BEHIND] = 0;
+                for (int o = 0; o < count; ++o) {
+                    if ((opponents[o] & runout) == 0) {
+                        int state = state(riverValue, Hand.fastEval(opponents[o] | cards));
+                        river[state]++;
+                        potentials[states[o] * 3 + state]++;
+                    }
+                }
+                double hs = (river[AHEAD] + river[TIED] / 2.0) /
+                        (river[AHEAD] + river[TIED] + river[BEHIND]);
+                squared += hs * hs;
+                histogram[bin(hs)]++;
+                total++;
+            }
+            squared /= total;
+        }
+        for (int i = 0; i < bins; ++i) {
+            histogram[i] /= total;
+        }
+
+        double positive = 0;
+        double negative = 0;
+        if (k > 0) {
+            double behindTotal = potentials[BEHIND * 3 + AHEAD] + potentials[BEHIND * 3 + TIED]
+                    + potentials[BEHIND * 3 + BEHIND];
+            double tiedTotal = potentials[TIED * 3 + AHEAD] + potentials[TIED * 3 + TIED]
+                    + potentials[TIED * 3 + BEHIND];
+            double aheadTotal = potentials[AHEAD * 3 + AHEAD] + potentials[AHEAD * 3 + TIED]
+                    + potentials[AHEAD * 3 + BEHIND];
+            double ppotDenominator = behindTotal + tiedTotal / 2;
+            double npotDenominator = aheadTotal + tiedTotal / 2;
+            if (ppotDenominator > 0) {
+                positive = (potentials[BEHIND * 3 + AHEAD] + potentials[BEHIND * 3 + TIED] / 2
+                        + potentials[TIED * 3 + AHEAD] / 2) / ppotDenominator;
+            }
+            if (npotDenominator > 0) {
+                negative = (potentials[AHEAD * 3 + BEHIND] + potentials[TIED * 3 + BEHIND] / 2
+                        + potentials[AHEAD * 3 + TIED] / 2) / npotDenominator;
+            }
+        }
+        return new HandStrength(handStrength, positive, negative, squared, histogram);
+    }
+
+    static private int state(int value, int opponent) {
+        return value > opponent ? AHEAD : value == opponent ? TIED : BEHIND;
+    }
+
+    private int bin(double hs) {
+        return Math.min(bins - 1, (int) (hs * bins));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.Collection;
+
+/**
+ * Table driven evaluator for hands of exactly 5 or 6 cards.
+ *
+ * Flushes are looked up by the 13 bit rank mask of the flush suit. Other hands
+ * only depend on how many cards there are of each rank, which is mapped to a
+ * dense index by a minimal perfect hash. Values are the same as those returned
+ * by {@link Hand#fastEval(CardSet)}.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class HashEvaluator {
+    static private final int MAX_CARDS = 6;
+    static private final int MAX_COUNT = Card.Suit.size;
+
+    // count[n][k] is the number of ways to spread k cards over n ranks
+    static private final int[][] count = new int[Card.Rank.size + 1][MAX_CARDS + 1];
+    // offset[rank][k][q] is the hash offset for q cards of rank with k cards remaining
+    static private final int[][][] offset = new int[Card.Rank.size][MAX_CARDS + 1][MAX_COUNT + 1];
+    static private final int[] flushes = new int[1 << Card.Rank.size];
+    static private final int[][] rankCounts = new int[MAX_CARDS + 1][];
+
+    static {
+        count[0][0] = 1;
+        for (int n = 1; n <= Card.Rank.size; ++n) {
+            for (int k = 0; k <= MAX_CARDS; ++k) {
+                for (int q = 0; q <= MAX_COUNT && q <= k; ++q) {
+                    count[n][k] += count[n - 1][k - q];
+                }
+            }
+        }
+        for (int rank = 0; rank < Card.Rank.size; ++rank) {
+            int remaining = Card.Rank.size - rank - 1;
+            for (int k = 0; k <= MAX_CARDS; ++k) {
+                for (int q = 1; q <= MAX_COUNT; ++q) {
+                    int d = q - 1;
+                    offset[rank][k][q] = offset[rank][k][d] + (d <= k ? count[remaining][k - d] : 0);
+                }
+            }
+        }
+
+        for (int ranks = 0; ranks < flushes.length; ++ranks) {
+            if (Integer.bitCount(ranks) >= 5) {
+                flushes[ranks] = Hand.fastEval(CardSet.suitMask(ranks, 0));
+            }
+        }
+
+        for (int k = 5; k <= MAX_CARDS; ++k) {
+            rankCounts[k] = new int[count[Card.Rank.size][k]];
+            fill(rankCounts[k], 0, k, 0L, 0);
+        }
+    }
+
+    private HashEvaluator() {
+    }
+
+    /**
+     * Store value of every combination of k cards over the ranks from rank
+     */
+    static private void fill(int[] values, int rank, int k, long cards, int suit) {
+        if (k == 0) {
+            values[hash(cards)] = Hand.fastEval(cards);
+            return;
+        }
+        if (rank == Card.Rank.size) {
+            return;
+        }
+        for (int q = 0; q <= MAX_COUNT && q <= k; ++q) {
+            // Rotate suits so the cards never make a flush
+            long rankCards = 0;
+            for (int i = 0; i < q; ++i) {
+                rankCards |= 1L << (rank * Card.Suit.size + (suit + i) % Card.Suit.size);
+            }
+            fill(values, rank + 1, k - q, cards | rankCards, (suit + q) % Card.Suit.size);
+        }
+    }
+
+    /**
+     * Return index of the rank counts of cards
+     */
+    static private int hash(long cards) {
+        int k = Long.bitCount(cards);
+        int h = 0;
+        for (int rank = 0; k > 0; ++rank) {
+            int q = Long.bitCount(cards & 0xFL);
+            h += offset[rank][k][q];
+            k -= q;
+            cards >>>= Card.Suit.size;
+        }
+        return h;
+    }
+
+    static public int eval(CardSet cs) {
+        return eval(cs.longValue());
+    }
+
+    static public int eval(Collection<Card> cards) {
+        long mask = 0;
+        for (Card card : cards) {
+            mask |= card.longValue();
+        }
+        return eval(mask);
+    }
+
+    static public int eval(long cards) {
+        int n = Long.bitCount(cards);
+        if (n < 5 || n > MAX_CARDS) {
+            throw new IllegalArgumentException("Hand must have 5 or 6 cards");
+        }
+        for (int suit = 0; suit < Card.Suit.size; ++suit) {
+            int ranks = CardSet.rankMask(cards, suit);
+            if (Integer.bitCount(ranks) >= 5) {
+                // No better hand than a flush is possible with 6 cards
+                return flushes[ranks];
+            }
+        }
+        return rankCounts[n][hash(cards)];
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Optional counters and timings of the evaluators.
+ *
+ * Enabled by running with -Dpoker.instrument=true. When disabled every hook
+ * is behind a check of the constant {@link #ENABLED} and is removed by the
+ * JIT compiler. When enabled each call is counted by call site and each
+ * hand value by category. One in {@link #SAMPLE_RATE} evaluations, and
+ * every batch and equity job, is also timed into a histogram of powers of two
+ * nanoseconds and has the bytes allocated by the calling thread counted.
+ * Allocations by worker threads of an equity job are not included.
+ *
+ * Batches and equity jobs are recorded as JDK Flight Recorder events, eg.
+ * java -Dpoker.instrument=true -XX:StartFlightRecording=filename=poker.jfr
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class Instrument {
+    static public final boolean ENABLED = Boolean.getBoolean("poker.instrument");
+    static public final int SAMPLE_RATE = Integer.getInteger("poker.instrument.sampleRate", 1024);
+    static public final int BUCKETS = 64;
+
+    static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    /**
+     * Instrumented call sites
+     */
+    static public enum Site {
+        EVAL, // Hand.eval
+        FAST_EVAL, // Hand.fastEval
+        EVAL_BATCH, // Hand.evalBatch
+        ENUMERATE, // EquityEnumerator.enumerate
+        SIMULATE // EquitySimulator.simulate
+    }
+
+    @Name("poker.Batch")
+    @Label("Evaluation Batch")
+    @Category("Poker")
+    static final class BatchEvent extends Event {
+        @Label("Hands")
+        int hands;
+
+        @Label("Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    @Name("poker.Equity")
+    @Label("Equity Job")
+    @Category("Poker")
+    static final class EquityEvent extends Event {
+        @Label("Players")
+        int players;
+
+        @Label("Board Cards")
+        int boardCards;
+
+        @Label("Runouts")
+        long runouts;
+
+        @Label("Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+
+        @Label("Simulated")
+        @Description("Whether the runouts were sampled instead of enumerated")
+        boolean simulated;
+    }
+
+    static private final Site[] sites = Site.values();
+
+    /**
+     * Counters of the hooks, only loaded once instrumentation is enabled so a
+     * disabled run does not initialize the management beans or turn on
+     * allocation counting
+     */
+    static private final class Counters {
+        static final LongAdder[] calls = adders(sites.length);
+        static final LongAdder[] samples = adders(sites.length);
+        static final LongAdder[] allocated = adders(sites.length);
+        static final LongAdder[][] latencies = new LongAdder[sites.length][];
+        static final LongAdder[] categories = adders(Hand.Category.values().length);
+        // Allocated bytes of the current thread at the start of each sampled site
+        static final ThreadLocal<long[]> allocationStart =
+                ThreadLocal.withInitial(() -> new long[sites.length]);
+        static final com.sun.management.ThreadMXBean threads;
+
+        static {
+            for (int i = 0; i < sites.length; ++i) {
+                latencies[i] = adders(BUCKETS);
+            }
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean &&
+                    ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+                threads = (com.sun.management.ThreadMXBean) bean;
+                threads.setThreadAllocatedMemoryEnabled(true);
+            } else {
+                threads = null;
+            }
+        }
+    }
+
+    private Instrument() {
+    }
+
+    static private LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; ++i) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Count a call of site and return its start time if it is sampled,
+     * otherwise NOT_SAMPLED
+     */
+    static long start(Site site) {
+        Counters.calls[site.ordinal()].increment();
+        if (SAMPLE_RATE > 1 && ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0) {
+            return NOT_SAMPLED;
+        }
+        return sample(site);
+    }
+
+    /**
+     * Count a call of site that is always sampled and return its start time
+     */
+    static long startJob(Site site) {
+        Counters.calls[site.ordinal()].increment();
+        return sample(site);
+    }
+
+    static private long sample(Site site) {
+        if (Counters.threads != null) {
+            Counters.allocationStart.get()[site.ordinal()] =
+                    Counters.threads.getCurrentThreadAllocatedBytes();
+        }
+        return System.nanoTime();
+    }
+
+    static void end(Site site, long start) {
+        if (start == NOT_SAMPLED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        int i = site.ordinal();
+        if (Counters.threads != null) {
+            long bytes = Counters.threads.getCurrentThreadAllocatedBytes();
+            Counters.allocated[i].add(bytes - Counters.allocationStart.get()[i]);
+        }
+        Counters.samples[i].increment();
+        Counters.latencies[i][BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(1, nanos))].increment();
+    }
+
+    /**
+     * End an evaluation and count the category of its hand value
+     */
+    static void end(Site site, long start, int value) {
+        Counters.categories[value >>> 24].increment();
+        end(site, start);
+    }
+
+    /**
+     * End a batch of n hands, counting the categories of the values in out
+     */
+    static void batch(long start, int[] out, int n) {
+        long nanos = System.nanoTime() - start;
+        end(Site.EVAL_BATCH, start);
+        for (int i = 0; i < n; ++i) {
+            Counters.categories[out[i] >>> 24].increment();
+        }
+        BatchEvent event = new BatchEvent();
+        if (event.isEnabled()) {
+            event.hands = n;
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    static void equity(Site site, long start, int players, long board, EquityResult result) {
+        long nanos = System.nanoTime() - start;
+        end(site, start);
+        EquityEvent event = new EquityEvent();
+        if (event.isEnabled()) {
+            event.nanos = nanos;
+            event.players = players;
+            event.boardCards = Long.bitCount(board);
+            event.runouts = result.getTotal();
+            event.simulated = site == Site.SIMULATE;
+            event.commit();
+        }
+    }
+
+    /**
+     * Return number of calls of site, always 0 when disabled
+     */
+    static public long getCalls(Site site) {
+        return ENABLED ? Counters.calls[site.ordinal()].sum() : 0;
+    }
+
+    /**
+     * Return number of hand values of category
+     */
+    static public long getCount(Hand.Category category) {
+        return ENABLED ? Counters.categories[category.ordinal()].sum() : 0;
+    }
+
+    /**
+     * Return number of timed calls of site
+     */
+    static public long getSamples(Site site) {
+        return ENABLED ? Counters.samples[site.ordinal()].sum() : 0;
+    }
+
+    /**
+     * Return histogram of the timed calls of site, where element i is the
+     * number of calls that took from 2^i to 2^(i+1) - 1 nanoseconds
+     */
+    static public long[] getLatencies(Site site) {
+        long[] histogram = new long[BUCKETS];
+        if (ENABLED) {
+            for (int i = 0; i < BUCKETS; ++i) {
+                histogram[i] = Counters.latencies[site.ordinal()][i].sum();
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Return bytes allocated by the timed calls of site
+     */
+    static public long getAllocatedBytes(Site site) {
+        return ENABLED ? Counters.allocated[site.ordinal()].sum() : 0;
+    }
+
+    static public void reset() {
+        if (!ENABLED) {
+            return;
+        }
+        for (int i = 0; i < sites.length; ++i) {
+            Counters.calls[i].reset();
+            Counters.samples[i].reset();
+            Counters.allocated[i].reset();
+            for (LongAdder bucket : Counters.latencies[i]) {
+                bucket.reset();
+            }
+        }
+        for (LongAdder category : Counters.categories) {
+            category.reset();
+        }
+    }
+
+    /**
+     * Return a line per site and category with a non zero count
+     */
+    static public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Site site : sites) {
+            long n = getCalls(site);
+            if (n == 0) {
+                continue;
+            }
+            long sampled = getSamples(site);
+            sb.append(site).append(" calls=").append(n).append(" sampled=").append(sampled);
+            if (sampled > 0) {
+                sb.append(" bytes/call=").append(getAllocatedBytes(site) / sampled);
+                sb.append(" median<").append(1L << (percentile(getLatencies(site), 0.5) + 1)).append("ns");
+            }
+            sb.append('\n');
+        }
+        for (Hand.Category category : Hand.Category.values()) {
+            if (getCount(category) > 0) {
+                sb.append(category).append(' ').append(getCount(category)).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    static private int percentile(long[] histogram, double p) {
+        long total = 0;
+        for (long n : histogram) {
+            total += n;
+        }
+        long seen = 0;
+        for (int i = 0; i < histogram.length; ++i) {
+            seen += histogram[i];
+            if (seen >= total * p) {
+                return i;
+            }
+        }
+        return histogram.length - 1;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+/**
+ * Evaluators for low hands, where a higher value is a better low so values
+ * compare the same way as those of {@link Hand#fastEval(long)}.
+ *
+ * Ace to five ranks the ace low and ignores straights and flushes, as in
+ * razz and the low half of hi/lo games. Eight or better is ace to five
+ * limited to five different ranks of eight or lower, and returns
+ * {@link #NO_LOW} when there is no such hand. Deuce to seven ranks the ace
+ * high and counts straights and flushes, so the best low is the worst high
+ * hand.
+ *
+ * Ace to five counts how many cards there are of each rank in one pass over
+ * the suits, then picks the best five ranks with a table of the lowest five
+ * bits of each 13 bit rank mask, where bit 0 is the ace and bit 12 the king.
+ *
+ * Hi/lo values pack the high value in the upper 32 bits and the eight or
+ * better low in the lower 32 bits. They can be given to
+ * {@link Showdown#resolve(int, int[], int[], int, long[], int, long[])} to split
+ * pots between the high and low hands.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class LowEvaluator {
+    static public final int NO_LOW = 0;
+
+    // Ace to five categories, with better lows having higher numbers
+    static private final int FOUR_OF_A_KIND = 0;
+    static private final int FULLHOUSE = 1;
+    static private final int THREE_OF_A_KIND = 2;
+    static private final int TWO_PAIR = 3;
+    static private final int PAIR = 4;
+    static private final int NO_PAIR = 5;
+    static private final int KEY_BITS = 26;
+    static private final int MAX_KEY = (1 << KEY_BITS) - 1;
+
+    static private final long SUIT_MASK = 0x1111111111111L;
+    // Eight and lower in the low rank mask
+    static private final int EIGHT_OR_BETTER = 0xFF;
+    static private final int ACE_LOW_STRAIGHT = 0x5432E;
+    static private final int ACE_HIGH_NO_STRAIGHT = 0xE5432;
+    static private final int DEUCE_TO_SEVEN_BASE = Hand.Category.values().length << 24;
+
+    // Lowest 5 bits of each rank mask, or 0 if it has fewer than 5 bits
+    static private final short[] lowest5 = new short[1 << Card.Rank.size];
+    // Lowest 3 bits of each eight or better rank mask, or 0 if fewer than 3 bits
+    static private final byte[] lowest3 = new byte[EIGHT_OR_BETTER + 1];
+
+    static {
+        for (int ranks = 0; ranks < lowest5.length; ++ranks) {
+            lowest5[ranks] = (short) lowest(ranks, 5);
+        }
+        for (int ranks = 0; ranks < lowest3.length; ++ranks) {
+            lowest3[ranks] = (byte) lowest(ranks, 3);
+        }
+    }
+
+    private LowEvaluator() {
+    }
+
+    static private int lowest(int ranks, int n) {
+        if (Integer.bitCount(ranks) < n) {
+            return 0;
+        }
+        while (Integer.bitCount(ranks) > n) {
+            ranks &= ~Integer.highestOneBit(ranks);
+        }
+        return ranks;
+    }
+
+    /**
+     * Return rank mask in low order, where bit 0 is the ace and bit 12 the
+     * king, of a rank mask as returned by {@link CardSet#rankMask(long, int)}
+     */
+    static int lowMask(int ranks) {
+        return ((Integer.reverse(ranks) >>> (32 - Card.Rank.size)) << 1 & 0x1FFE) | (ranks & 1);
+    }
+
+    /**
+     * Return low rank mask of the ranks in cards
+     */
+    static int lowRanks(long cards) {
+        return lowMask(CardSet.rankMask(cards | cards >>> 1 | cards >>> 2 | cards >>> 3, 0));
+    }
+
+    /**
+     * Return low rank mask of the ranks with at least n cards, given the
+     * count of each rank in the nibbles of counts
+     */
+    static private int ranksWith(long counts, int n) {
+        return lowMask(CardSet.rankMask((counts + (8 - n) * SUIT_MASK) >>> 3, 0));
+    }
+
+    /**
+     * Return ace to five value, lower ranks of category being better
+     */
+    static private int value(int category, int primary, int secondary) {
+        return category << KEY_BITS | (MAX_KEY - (primary << Card.Rank.size | secondary));
+    }
+
+    /**
+     * Return ace to five value of the best low of 5 or more cards
+     */
+    static public int aceToFive(long cards) {
+        if (Long.bitCount(cards) < 5) {
+            throw new IllegalArgumentException("Hand must have at least 5 cards");
+        }
+        long counts = (cards & SUIT_MASK) + (cards >>> 1 & SUIT_MASK) + (cards >>> 2 & SUIT_MASK) +
+                (cards >>> 3 & SUIT_MASK);
+        int ranks = ranksWith(counts, 1);
+        int distinct = Integer.bitCount(ranks);
+        if (distinct >= 5) {
+            return value(NO_PAIR, lowest5[ranks], 0);
+        }
+        int pairs = ranksWith(counts, 2);
+        if (distinct == 4) {
+            int pair = pairs & -pairs;
+            return value(PAIR, pair, ranks & ~pair);
+        }
+        if (distinct == 3) {
+            if (Integer.bitCount(pairs) >= 2) {
+                int low = pairs & -pairs;
+                int twoPair = low | Integer.lowestOneBit(pairs & ~low);
+                return value(TWO_PAIR, twoPair, ranks & ~twoPair);
+            }
+            return value(THREE_OF_A_KIND, pairs, ranks & ~pairs);
+        }
+        int trips = ranksWith(counts, 3);
+        if (Integer.bitCount(pairs) >= 2 && trips != 0) {
+            int trip = trips & -trips;
+            return value(FULLHOUSE, trip, ranks & ~trip);
+        }
+        int quads = ranksWith(counts, 4);
+        return value(FOUR_OF_A_KIND, quads, ranks & ~quads);
+    }
+
+    static public int aceToFive(CardSet cards) {
+        return aceToFive(cards.longValue());
+    }
+
+    /**
+     * Return value of the best eight or better low of cards, or NO_LOW
+     */
+    static public int eightOrBetter(long cards) {
+        int ranks = lowest5[lowRanks(cards) & EIGHT_OR_BETTER];
+        return ranks == 0 ? NO_LOW : value(NO_PAIR, ranks, 0);
+    }
+
+    static public int eightOrBetter(CardSet cards) {
+        return eightOrBetter(cards.longValue());
+    }
+
+    /**
+     * Return value of the best eight or better low using exactly 2 of the
+     * hole cards and 3 of the board, or NO_LOW
+     */
+    static public int omahaEightOrBetter(long hole, long board) {
+        int holeRanks = lowRanks(hole) & EIGHT_OR_BETTER;
+        int boardRanks = lowRanks(board) & EIGHT_OR_BETTER;
+        if (Integer.bitCount(boardRanks) < 3) {
+            return NO_LOW;
+        }
+        int best = 0;
+        for (int first = holeRanks; first != 0; first &= first - 1) {
+            for (int second = first & (first - 1); second != 0; second &= second - 1) {
+                int pair = (first & -first) | (second & -second);
+                int rest = lowest3[boardRanks & ~pair] & 0xFF;
+                if (rest != 0 && (best == 0 || (pair | rest) < best)) {
+                    best = pair | rest;
+                }
+            }
+        }
+        return best == 0 ? NO_LOW : value(NO_PAIR, best, 0);
+    }
+
+    /**
+     * Return deuce to seven value of the best low of 5 to 7 cards
+     */
+    static public int deuceToSeven(long cards) {
+        int n = Long.bitCount(cards);
+        if (n == 5) {
+            return deuceToSevenFive(cards);
+        }
+        if (n < 5 || n > 7) {
+            throw new IllegalArgumentException("Hand must have 5 to 7 cards");
+        }
+        // Best of the hands without n - 5 of the cards
+        int best = 0;
+        for (long a = cards; a != 0; a &= a - 1) {
+            long withoutA = cards & ~(a & -a);
+            if (n == 6) {
+                best = Math.max(best, deuceToSevenFive(withoutA));
+                continue;
+            }
+            for (long b = a & (a - 1); b != 0; b &= b - 1) {
+                best = Math.max(best, deuceToSevenFive(withoutA & ~(b & -b)));
+            }
+        }
+        return best;
+    }
+
+    static public int deuceToSeven(CardSet cards) {
+        return deuceToSeven(cards.longValue());
+    }
+
+    static private int deuceToSevenFive(long cards) {
+        int value = Hand.fastEval(cards);
+        if ((value & 0xFFFFF) == ACE_LOW_STRAIGHT) {
+            // A-2-3-4-5 is not a straight
+            value = Hand.category(value) == Hand.Category.STRAIGHT_FLUSH ?
+                    Hand.Category.FLUSH.ordinal() << 24 | ACE_HIGH_NO_STRAIGHT :
+                    Hand.Category.HIGH_CARD.ordinal() << 24 | ACE_HIGH_NO_STRAIGHT;
+        }
+        return DEUCE_TO_SEVEN_BASE - value;
+    }
+
+    /**
+     * Return hi/lo value of the best high and eight or better low of 5 to 7
+     * cards, as in stud hi/lo
+     */
+    static public long hiLo(long cards) {
+        return (long) Hand.fastEval(cards) << 32 | eightOrBetter(cards);
+    }
+
+    /**
+     * Return hi/lo value of Omaha hole cards, 4 or 5, and board, both halves
+     * using exactly 2 hole cards and 3 board cards
+     */
+    static public long omahaHiLo(long hole, long board) {
+        OmahaEvaluator evaluator = Long.bitCount(hole) == 5 ? OmahaEvaluator.OMAHA5 : OmahaEvaluator.OMAHA;
+        return (long) evaluator.eval(hole, board) << 32 | omahaEightOrBetter(hole, board);
+    }
+
+    /**
+     * Return high value of a hi/lo value
+     */
+    static public int high(long hiLo) {
+        return (int) (hiLo >>> 32);
+    }
+
+    /**
+     * Return low value of a hi/lo value, NO_LOW if there is no low
+     */
+    static public int low(long hiLo) {
+        return (int) hiLo;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Evaluator for Omaha, where a hand must use exactly two hole cards and
+ * three cards from the board.
+ *
+ * Without a flush the value only depends on the ranks of the hole cards and
+ * the board. The best value for every multiset of board ranks and pair of
+ * hole ranks is precomputed, so a hand is one table lookup per pair of hole
+ * cards. Flushes are only checked for suits with at least three board cards
+ * and two hole cards, and when the board has no pair a flush is known to
+ * beat every other hand. Values are the same as those returned by
+ * {@link Hand#fastEval(CardSet)}.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class OmahaEvaluator implements HandEvaluator {
+    static public final OmahaEvaluator OMAHA = new OmahaEvaluator(4);
+    static public final OmahaEvaluator OMAHA5 = new OmahaEvaluator(5);
+
+    static private final int PAIRS = 91;
+    static private final int STRAIGHT_FLUSH = Hand.Category.STRAIGHT_FLUSH.ordinal() << 24;
+
+    // multisets[k][rank] is the number of multisets of k ranks below rank
+    static private final int[][] multisets = new int[6][Card.Rank.size + 1];
+    // First row of the boards with 3, 4 and 5 cards
+    static private final int[] boardOffsets = new int[6];
+    // values[board * PAIRS + pair] is the best value without a flush
+    static private final int[] values;
+    static private final int[] flushes = new int[1 << Card.Rank.size];
+
+    static {
+        for (int rank = 0; rank <= Card.Rank.size; ++rank) {
+            multisets[0][rank] = 1;
+        }
+        for (int k = 1; k < multisets.length; ++k) {
+            for (int rank = 1; rank <= Card.Rank.size; ++rank) {
+                multisets[k][rank] = multisets[k][rank - 1] + multisets[k - 1][rank];
+            }
+        }
+        int rows = 0;
+        for (int n = 3; n <= 5; ++n) {
+            boardOffsets[n] = rows;
+            rows += multisets[n][Card.Rank.size];
+        }
+
+        // Value of each triple of board ranks with each pair of hole ranks
+        int[] triples = new int[multisets[3][Card.Rank.size] * PAIRS];
+        int[] ranks = new int[5];
+        for (int c = 0; c < Card.Rank.size; ++c) {
+            for (int b = 0; b <= c; ++b) {
+                for (int a = 0; a <= b; ++a) {
+                    for (int e = 0; e < Card.Rank.size; ++e) {
+                        for (int d = 0; d <= e; ++d) {
+                            ranks[0] = a;
+                            ranks[1] = b;
+                            ranks[2] = c;
+                            ranks[3] = d;
+                            ranks[4] = e;
+                            long cards = rotateSuits(ranks);
+                            if (cards != 0) {
+                                triples[index(a, b, c) * PAIRS + index(d, e)] = Hand.fastEval(cards);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        values = new int[rows * PAIRS];
+        for (int n = 3; n <= 5; ++n) {
+            fillBoards(triples, new int[n], 0, 0);
+        }
+
+        for (int mask = 0; mask < flushes.length; ++mask) {
+            if (Integer.bitCount(mask) == 5) {
+                flushes[mask] = Hand.fastEval(CardSet.suitMask(mask, 0));
+            }
+        }
+    }
+
+    /**
+     * Fill the rows of every board with ranks from the i-th onwards at least rank
+     */
+    static private void fillBoards(int[] triples, int[] board, int i, int rank) {
+        if (i == board.length) {
+            int row = boardOffsets[board.length];
+            for (int j = 0; j < board.length; ++j) {
+                row += multisets[j + 1][board[j]];
+            }
+            for (int pair = 0; pair < PAIRS; ++pair) {
+                int best = 0;
+                for (int c = 2; c < board.length; ++c) {
+                    for (int b = 1; b < c; ++b) {
+                        for (int a = 0; a < b; ++a) {
+                            int triple = index(board[a], board[b], board[c]);
+                            best = Math.max(best, triples[triple * PAIRS + pair]);
+                        }
+                    }
+                }
+                values[row * PAIRS + pair] = best;
+            }
+            return;
+        }
+        for (int r = rank; r < Card.Rank.size; ++r) {
+            board[i] = r;
+            fillBoards(triples, board, i + 1, r);
+        }
+    }
+
+    private final int holeCards;
+
+    /**
+     * @param holeCards Number of hole cards, 4 for Omaha and 5 for 5 card Omaha
+     */
+    public OmahaEvaluator(int holeCards) {
+        if (holeCards < 4 || holeCards > 6) {
+            throw new IllegalArgumentException("Invalid number of hole cards; holeCards=" + holeCards);
+        }
+        this.holeCards = holeCards;
+    }
+
+    /**
+     * Return cards with the ranks and suits that do not make a flush, or 0 if
+     * a rank is used more than four times
+     */
+    static private long rotateSuits(int[] ranks) {
+        Arrays.sort(ranks);
+        long cards = 0;
+        for (int i = 0; i < ranks.length; ++i) {
+            long card = 1L << (ranks[i] * Card.Suit.size + i % Card.Suit.size);
+            if ((cards & card) != 0) {
+                return 0;
+            }
+            cards |= card;
+        }
+        return cards;
+    }
+
+    /**
+     * Return index of the multiset of ranks a <= b
+     */
+    static private int index(int a, int b) {
+        return multisets[1][a] + multisets[2][b];
+    }
+
+    /**
+     * Return index of the multiset of ranks a <= b <= c
+     */
+    static private int index(int a, int b, int c) {
+        return multisets[1][a] + multisets[2][b] + multisets[3][c];
+    }
+
+    @Override
+    public int getHoleCards() {
+        return holeCards;
+    }
+
+    @Override
+    public long getDeck() {
+        return EquityEnumerator.DECK_MASK;
+    }
+
+    public int eval(CardSet hole, CardSet board) {
+        return eval(hole.longValue(), board.longValue());
+    }
+
+    public int eval(Collection<Card> hole, Collection<Card> board) {
+        return eval(new CardSet(hole).longValue(), new CardSet(board).longValue());
+    }
+
+    /**
+     * Return value of the best hand using two of the hole cards and three of
+     * the 3 to 5 board cards
+     */
+    @Override
+    public int eval(long hole, long board) {
+        int n = Long.bitCount(board);
+        if (Long.bitCount(hole) != holeCards || n < 3 || n > 5 || (hole & board) != 0) {
+            throw new IllegalArgumentException("Invalid Omaha hand; hole=" + new CardSet(hole)
+                    + ", board=" + new CardSet(board));
+        }
+
+        int best = 0;
+        for (int suit = 0; suit < Card.Suit.size; ++suit) {
+            int boardRanks = CardSet.rankMask(board, suit);
+            int holeRanks = CardSet.rankMask(hole, suit);
+            if (Integer.bitCount(boardRanks) >= 3 && Integer.bitCount(holeRanks) >= 2) {
+                best = Math.max(best, flush(holeRanks, boardRanks));
+            }
+        }
+        if (best >= STRAIGHT_FLUSH) {
+            return best;
+        }
+        if (best != 0 && !isPaired(board)) {
+            // Without a pair on the board the best hand is a straight or worse
+            return best;
+        }
+
+        int row = boardOffsets[n];
+        int k = 1;
+        for (long cards = board; cards != 0; cards &= cards - 1) {
+            row += multisets[k++][Long.numberOfTrailingZeros(cards) >> 2];
+        }
+        row *= PAIRS;
+        for (long e = hole; e != 0; e &= e - 1) {
+            int re = Long.numberOfTrailingZeros(e) >> 2;
+            for (long d = hole & (Long.lowestOneBit(e) - 1); d != 0; d &= d - 1) {
+                best = Math.max(best, values[row + index(Long.numberOfTrailingZeros(d) >> 2, re)]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return best flush using two of holeRanks and three of boardRanks
+     */
+    static private int flush(int holeRanks, int boardRanks) {
+        int best = 0;
+        for (int c = boardRanks; c != 0; c &= c - 1) {
+            for (int b = boardRanks & (Integer.lowestOneBit(c) - 1); b != 0; b &= b - 1) {
+                for (int a = boardRanks & (Integer.lowestOneBit(b) - 1); a != 0; a &= a - 1) {
+                    int three = Integer.lowestOneBit(a) | Integer.lowestOneBit(b) | Integer.lowestOneBit(c);
+                    for (int e = holeRanks; e != 0; e &= e - 1) {
+                        for (int d = holeRanks & (Integer.lowestOneBit(e) - 1); d != 0; d &= d - 1) {
+                            int two = Integer.lowestOneBit(d) | Integer.lowestOneBit(e);
+                            best = Math.max(best, flushes[three | two]);
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    static private boolean isPaired(long board) {
+        long ranks = board | board >>> 1;
+        ranks |= ranks >>> 2;
+        return Long.bitCount(ranks & 0x1111111111111L) < Long.bitCount(board);
+    }
+}
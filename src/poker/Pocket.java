@@ -66,6 +66,73 @@ public class Pocket {
         return getGap() == 1;
     }
 
+    /**
+     * Return the pocket packed into an int, see {@link #pack(int, int)}
+     */
+    public int intValue() {
+        return pack(first.intValue(), second.intValue());
+    }
+
+    /**
+     * Return bitset of the two cards
+     */
+    public long longValue() {
+        return first.longValue() | second.longValue();
+    }
+
+    /**
+     * Return the pocket of two card indexes packed into an int from 0 to
+     * 1325. Packed pockets are dense so can index arrays directly.
+     */
+    static public int pack(int a, int b) {
+        if (a == b || a < 0 || b < 0 || a >= 52 || b >= 52) {
+            throw new IllegalArgumentException("Invalid pocket; a=" + a + ", b=" + b);
+        }
+        return Range.index(a, b);
+    }
+
+    /**
+     * Return the packed pocket of a bitset of two cards
+     */
+    static public int pack(long mask) {
+        if (Long.bitCount(mask) != 2) {
+            throw new IllegalArgumentException("Invalid pocket; mask=" + mask);
+        }
+        return pack(Long.numberOfTrailingZeros(mask), 63 - Long.numberOfLeadingZeros(mask));
+    }
+
+    /**
+     * Return index of the highest ranked card of packed pocket
+     */
+    static public int first(int pocket) {
+        return Range.firstCard(check(pocket));
+    }
+
+    /**
+     * Return index of the lowest ranked card of packed pocket
+     */
+    static public int second(int pocket) {
+        return Range.secondCard(check(pocket));
+    }
+
+    /**
+     * Return bitset of the cards of packed pocket
+     */
+    static public long longValue(int pocket) {
+        return Range.combo(check(pocket));
+    }
+
+    static private int check(int pocket) {
+        if (pocket < 0 || pocket >= Range.COMBOS) {
+            throw new IllegalArgumentException("Invalid pocket; pocket=" + pocket);
+        }
+        return pocket;
+    }
+
+    static public Pocket valueOf(int pocket) {
+        return new Pocket(Card.valueOf(first(pocket)), Card.valueOf(second(pocket)));
+    }
+
     public CardList toList() {
         CardList cardList = new CardList();
         cardList.add(first);
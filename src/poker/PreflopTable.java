@@ -0,0 +1,250 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Precomputed heads up preflop all-in equities.
+ *
+ * Holds the equity of every pair of the 1326 pocket combinations and of every
+ * pair of the 169 starting hand classes. Matchups that are the same under a
+ * permutation of suits are only enumerated once when generating the table.
+ * Equities are stored as 16 bit fixed point numbers and since the equity of
+ * villain against hero is one minus the equity of hero against villain only
+ * half of the combination table is kept.
+ *
+ * Generate the table file with: java poker.PreflopTable preflop.dat
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class PreflopTable {
+    static public final int CLASSES = 169;
+
+    static private final int MAGIC = 0x50464551; // PFEQ
+    static private final int VERSION = 1;
+    static private final int SCALE = 0xFFFF;
+    static private final int PAIRS = Range.COMBOS * (Range.COMBOS - 1) / 2;
+
+    // classEquity[hero * CLASSES + villain]
+    private final char[] classEquity;
+    // comboEquity[Range.index(hero, villain)] for hero < villain
+    private final char[] comboEquity;
+
+    PreflopTable(char[] classEquity, char[] comboEquity) {
+        this.classEquity = classEquity;
+        this.comboEquity = comboEquity;
+    }
+
+    /**
+     * Return index of the starting hand class of pocket. Pairs are on the
+     * diagonal, suited hands above it and offsuit hands below it.
+     */
+    static public int classIndex(Pocket pocket) {
+        int hi = pocket.getFirst().getRank().ordinal();
+        int lo = pocket.getSecond().getRank().ordinal();
+        return classIndex(hi, lo, pocket.isSuited());
+    }
+
+    /**
+     * Return index of starting hand class, eg. AKs, AKo or TT. A hand that is
+     * not a pair must say whether it is suited, as AK is two classes.
+     */
+    static public int classIndex(String str) {
+        Card.Rank first = str.length() >= 2 ? Card.Rank.valueOf(str.charAt(0)) : null;
+        Card.Rank second = str.length() >= 2 ? Card.Rank.valueOf(str.charAt(1)) : null;
+        boolean suited = str.length() == 3 && str.charAt(2) == 's';
+        if (first == null || second == null || str.length() > 3 ||
+                (str.length() == 3 && !suited && str.charAt(2) != 'o') ||
+                (str.length() == 2 && first != second) || (str.length() == 3 && first == second)) {
+            throw new IllegalArgumentException("Invalid starting hand; hand=" + str);
+        }
+        int hi = Math.min(first.ordinal(), second.ordinal());
+        int lo = Math.max(first.ordinal(), second.ordinal());
+        return classIndex(hi, lo, suited);
+    }
+
+    static private int classIndex(int hi, int lo, boolean suited) {
+        return suited ? hi * Card.Rank.size + lo : lo * Card.Rank.size + hi;
+    }
+
+    static private int classIndex(int combo) {
+        int first = Range.firstCard(combo);
+        int second = Range.secondCard(combo);
+        return classIndex(first >> 2, second >> 2, (first & 3) == (second & 3));
+    }
+
+    public double getEquity(Pocket hero, Pocket villain) {
+        return getEquity(
+                Range.index(hero.getFirst().intValue(), hero.getSecond().intValue()),
+                Range.index(villain.getFirst().intValue(), villain.getSecond().intValue()));
+    }
+
+    private double getEquity(int hero, int villain) {
+        if ((Range.combo(hero) & Range.combo(villain)) != 0) {
+            throw new IllegalArgumentException("Pockets share a card");
+        }
+        if (hero < villain) {
+            return (double) comboEquity[Range.index(hero, villain)] / SCALE;
+        }
+        return 1 - (double) comboEquity[Range.index(villain, hero)] / SCALE;
+    }
+
+    /**
+     * Return equity of starting hand class against another, averaged over
+     * every pair of combinations that do not share a card
+     */
+    public double getClassEquity(int hero, int villain) {
+        return (double) classEquity[hero * CLASSES + villain] / SCALE;
+    }
+
+    public double getClassEquity(String hero, String villain) {
+        return getClassEquity(classIndex(hero), classIndex(villain));
+    }
+
+    /**
+     * Return key of the matchup with suits permuted to the smallest key
+     */
+    static int canonicalKey(int hero, int villain) {
+        int h1 = Range.firstCard(hero);
+        int h2 = Range.secondCard(hero);
+        int v1 = Range.firstCard(villain);
+        int v2 = Range.secondCard(villain);
+        int key = Integer.MAX_VALUE;
+        for (int[] p : CardSet.suitPermutations) {
+            int h = Range.index((h1 & ~3) | p[h1 & 3], (h2 & ~3) | p[h2 & 3]);
+            int v = Range.index((v1 & ~3) | p[v1 & 3], (v2 & ~3) | p[v2 & 3]);
+            key = Math.min(key, h * Range.COMBOS + v);
+        }
+        return key;
+    }
+
+    static public PreflopTable generate() {
+        return generate(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Enumerate every distinct matchup. This takes a long time.
+     */
+    static public PreflopTable generate(ForkJoinPool pool) {
+        int[] keys = new int[PAIRS];
+        for (int v = 1; v < Range.COMBOS; ++v) {
+            for (int h = 0; h < v; ++h) {
+                keys[Range.index(h, v)] = (Range.combo(h) & Range.combo(v)) != 0 ?
+                        -1 : canonicalKey(h, v);
+            }
+        }
+        int[] distinct = keys.clone();
+        Arrays.sort(distinct);
+        int n = 0;
+        for (int key : distinct) {
+            if (key >= 0 && (n == 0 || distinct[n - 1] != key)) {
+                distinct[n++] = key;
+            }
+        }
+        distinct = Arrays.copyOf(distinct, n);
+
+        char[] equities = new char[n];
+        CardSet none = new CardSet();
+        for (int i = 0; i < n; ++i) {
+            int h = distinct[i] / Range.COMBOS;
+            int v = distinct[i] % Range.COMBOS;
+            EquityResult result = EquityEnumerator.enumerate(
+                    Arrays.asList(pocket(h), pocket(v)), none, none, pool);
+            equities[i] = (char) Math.round(result.getEquity(0) * SCALE);
+        }
+
+        char[] comboEquity = new char[PAIRS];
+        for (int i = 0; i < PAIRS; ++i) {
+            if (keys[i] >= 0) {
+                comboEquity[i] = equities[Arrays.binarySearch(distinct, keys[i])];
+            }
+        }
+
+        // Average combination equities for each pair of classes
+        PreflopTable table = new PreflopTable(null, comboEquity);
+        double[] sums = new double[CLASSES * CLASSES];
+        int[] counts = new int[CLASSES * CLASSES];
+        for (int h = 0; h < Range.COMBOS; ++h) {
+            for (int v = 0; v < Range.COMBOS; ++v) {
+                if ((Range.combo(h) & Range.combo(v)) == 0) {
+                    int c = classIndex(h) * CLASSES + classIndex(v);
+                    sums[c] += table.getEquity(h, v);
+                    counts[c]++;
+                }
+            }
+        }
+        char[] classEquity = new char[CLASSES * CLASSES];
+        for (int i = 0; i < classEquity.length; ++i) {
+            classEquity[i] = (char) Math.round(sums[i] / counts[i] * SCALE);
+        }
+        return new PreflopTable(classEquity, comboEquity);
+    }
+
+    static private Pocket pocket(int combo) {
+        return new Pocket(Card.valueOf(Range.firstCard(combo)), Card.valueOf(Range.secondCard(combo)));
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        for (char c : classEquity) {
+            data.writeChar(c);
+        }
+        for (char c : comboEquity) {
+            data.writeChar(c);
+        }
+        data.flush();
+    }
+
+    public void write(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(out);
+        }
+    }
+
+    static public PreflopTable read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not a preflop table");
+        }
+        byte[] bytes = new byte[(CLASSES * CLASSES + PAIRS) * 2];
+        data.readFully(bytes);
+        char[] classEquity = new char[CLASSES * CLASSES];
+        char[] comboEquity = new char[PAIRS];
+        for (int i = 0, j = 0; i < classEquity.length; ++i, j += 2) {
+            classEquity[i] = (char) (((bytes[j] & 0xFF) << 8) | (bytes[j + 1] & 0xFF));
+        }
+        for (int i = 0, j = classEquity.length * 2; i < comboEquity.length; ++i, j += 2) {
+            comboEquity[i] = (char) (((bytes[j] & 0xFF) << 8) | (bytes[j + 1] & 0xFF));
+        }
+        return new PreflopTable(classEquity, comboEquity);
+    }
+
+    static public PreflopTable read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    static public void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java poker.PreflopTable <file>");
+            System.exit(1);
+        }
+        generate().write(Paths.get(args[0]));
+    }
+}
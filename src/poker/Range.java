@@ -0,0 +1,283 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+/**
+ * A weighted range of pocket cards.
+ *
+ * Each of the 1326 two card combinations has a weight, where 0 means the
+ * combination is not in the range. Ranges can be parsed from the usual
+ * notation, eg. "QQ+, AKs, AJo+, 76s-54s, KhQh:0.5", where the optional
+ * ":weight" suffix applies to every combination of that entry.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class Range {
+    static public final int COMBOS = 1326;
+
+    // Cards of each combination, indexed by index(first, second)
+    static private final long[] combos = new long[COMBOS];
+    static private final byte[] firstCards = new byte[COMBOS];
+    static private final byte[] secondCards = new byte[COMBOS];
+
+    static {
+        for (int second = 1; second < 52; ++second) {
+            for (int first = 0; first < second; ++first) {
+                int i = index(first, second);
+                combos[i] = (1L << first) | (1L << second);
+                firstCards[i] = (byte) first;
+                secondCards[i] = (byte) second;
+            }
+        }
+    }
+
+    static private final int ANY = 0;
+    static private final int SUITED = 1;
+    static private final int OFFSUIT = 2;
+
+    private final double[] weights = new double[COMBOS];
+
+    public Range() {
+    }
+
+    public Range(Range range) {
+        System.arraycopy(range.weights, 0, weights, 0, COMBOS);
+    }
+
+    /**
+     * Return index of the combination of two distinct cards
+     */
+    static int index(int a, int b) {
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        return b * (b - 1) / 2 + a;
+    }
+
+    static long combo(int index) {
+        return combos[index];
+    }
+
+    static int firstCard(int index) {
+        return firstCards[index];
+    }
+
+    static int secondCard(int index) {
+        return secondCards[index];
+    }
+
+    double weight(int index) {
+        return weights[index];
+    }
+
+    public void add(Pocket pocket) {
+        add(pocket, 1);
+    }
+
+    public void add(Pocket pocket, double weight) {
+        if (!(weight >= 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Invalid weight; weight=" + weight);
+        }
+        weights[index(pocket.getFirst().intValue(), pocket.getSecond().intValue())] = weight;
+    }
+
+    public void remove(Pocket pocket) {
+        add(pocket, 0);
+    }
+
+    public double getWeight(Pocket pocket) {
+        return weights[index(pocket.getFirst().intValue(), pocket.getSecond().intValue())];
+    }
+
+    /**
+     * Remove every combination that contains one of cards
+     */
+    public void removeAll(CardSet cards) {
+        long mask = cards.longValue();
+        for (int i = 0; i < COMBOS; ++i) {
+            if ((combos[i] & mask) != 0) {
+                weights[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Return number of combinations in the range
+     */
+    public int size() {
+        int n = 0;
+        for (double weight : weights) {
+            if (weight > 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = 0; i < COMBOS; ++i) {
+            if (weights[i] <= 0) {
+                continue;
+            }
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append(Card.valueOf(secondCards[i]));
+            sb.append(Card.valueOf(firstCards[i]));
+            if (weights[i] != 1) {
+                sb.append(':');
+                sb.append(weights[i]);
+            }
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    static public Range valueOf(String str) {
+        Range range = new Range();
+        for (String entry : str.split(",")) {
+            entry = entry.trim();
+            if (!entry.isEmpty()) {
+                range.parseEntry(entry);
+            }
+        }
+        return range;
+    }
+
+    private void parseEntry(String entry) {
+        double weight = 1;
+        String hands = entry;
+        int colon = entry.indexOf(':');
+        if (colon >= 0) {
+            hands = entry.substring(0, colon).trim();
+            try {
+                weight = Double.parseDouble(entry.substring(colon + 1).trim());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid weight; entry=" + entry);
+            }
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Invalid weight; entry=" + entry);
+            }
+        }
+
+        // Specific combination, eg. AsKs
+        if (hands.length() == 4 && Card.Suit.valueOf(hands.charAt(1)) != null) {
+            Card first = Card.valueOf(hands.substring(0, 2));
+            Card second = Card.valueOf(hands.substring(2, 4));
+            if (first == second) {
+                throw new IllegalArgumentException("Invalid range entry; entry=" + entry);
+            }
+            weights[index(first.intValue(), second.intValue())] = weight;
+            return;
+        }
+
+        int dash = hands.indexOf('-');
+        if (dash >= 0) {
+            int[] from = parseClass(hands.substring(0, dash), entry);
+            int[] to = parseClass(hands.substring(dash + 1), entry);
+            if (from[2] != to[2]) {
+                throw new IllegalArgumentException("Invalid range entry; entry=" + entry);
+            }
+            int steps = from[0] - to[0];
+            boolean fromPair = from[0] == from[1];
+            boolean toPair = to[0] == to[1];
+            if (fromPair != toPair) {
+                // A pair can only range to another pair, eg. AA-A2 is invalid
+                throw new IllegalArgumentException("Invalid range entry; entry=" + entry);
+            }
+            if (fromPair) {
+                // Pairs, eg. QQ-99
+                for (int i = 0; i <= Math.abs(steps); ++i) {
+                    int rank = Math.min(from[0], to[0]) + i;
+                    addClass(rank, rank, from[2], weight);
+                }
+            } else if (from[0] == to[0]) {
+                // Kickers, eg. A9s-A2s
+                for (int lo = Math.min(from[1], to[1]); lo <= Math.max(from[1], to[1]); ++lo) {
+                    addClass(from[0], lo, from[2], weight);
+                }
+            } else if (from[1] - to[1] == steps) {
+                // Connectors with the same gap, eg. 76s-54s
+                int hi = Math.min(from[0], to[0]);
+                int lo = Math.min(from[1], to[1]);
+                for (int i = 0; i <= Math.abs(steps); ++i) {
+                    addClass(hi + i, lo + i, from[2], weight);
+                }
+            } else {
+                throw new IllegalArgumentException("Invalid range entry; entry=" + entry);
+            }
+            return;
+        }
+
+        boolean plus = hands.endsWith("+");
+        int[] c = parseClass(plus ? hands.substring(0, hands.length() - 1) : hands, entry);
+        if (!plus) {
+            addClass(c[0], c[1], c[2], weight);
+        } else if (c[0] == c[1]) {
+            // Pairs, eg. QQ+
+            for (int rank = c[0]; rank <= Card.Rank.ACE.getValue(); ++rank) {
+                addClass(rank, rank, c[2], weight);
+            }
+        } else {
+            // Kickers up to one below the high card, eg. A9s+
+            for (int lo = c[1]; lo < c[0]; ++lo) {
+                addClass(c[0], lo, c[2], weight);
+            }
+        }
+    }
+
+    /**
+     * Parse starting hand class, eg. AKs, returning high rank, low rank and suitedness
+     */
+    static private int[] parseClass(String str, String entry) {
+        if (str.length() < 2 || str.length() > 3) {
+            throw new IllegalArgumentException("Invalid range entry; entry=" + entry);
+        }
+        Card.Rank first = Card.Rank.valueOf(str.charAt(0));
+        Card.Rank second = Card.Rank.valueOf(str.charAt(1));
+        if (first == null || second == null) {
+            throw new IllegalArgumentException("Invalid range entry; entry=" + entry);
+        }
+        int type = ANY;
+        if (str.length() == 3) {
+            switch (str.charAt(2)) {
+                case 's':
+                    type = SUITED;
+                    break;
+                case 'o':
+                    type = OFFSUIT;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid range entry; entry=" + entry);
+            }
+        }
+        int hi = Math.max(first.getValue(), second.getValue());
+        int lo = Math.min(first.getValue(), second.getValue());
+        if (hi == lo && type == SUITED) {
+            throw new IllegalArgumentException("Invalid range entry; entry=" + entry);
+        }
+        return new int[] { hi, lo, type };
+    }
+
+    private void addClass(int hi, int lo, int type, double weight) {
+        int hiBase = (Card.Rank.ACE.getValue() - hi) * Card.Suit.size;
+        int loBase = (Card.Rank.ACE.getValue() - lo) * Card.Suit.size;
+        for (int s1 = 0; s1 < Card.Suit.size; ++s1) {
+            for (int s2 = 0; s2 < Card.Suit.size; ++s2) {
+                if (hi == lo && s2 <= s1) {
+                    continue;
+                }
+                if ((type == SUITED && s1 != s2) || (type == OFFSUIT && s1 == s2)) {
+                    continue;
+                }
+                weights[index(hiBase + s1, loBase + s2)] = weight;
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Exact all-in equity of one range against another.
+ *
+ * Every runout of the board is enumerated. For each runout the combinations
+ * of both ranges are evaluated once and sorted by value, then a single sweep
+ * counts the weight each hero combination beats or ties, subtracting the
+ * villain combinations that share a card with it.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class RangeEquity {
+    private final double win;
+    private final double tie;
+    private final double loss;
+
+    private RangeEquity(double[] totals) {
+        this.win = totals[0];
+        this.tie = totals[1];
+        this.loss = totals[2];
+    }
+
+    /**
+     * Return weight of the matchups hero wins
+     */
+    public double getWin() {
+        return win;
+    }
+
+    public double getTie() {
+        return tie;
+    }
+
+    public double getLoss() {
+        return loss;
+    }
+
+    /**
+     * Return share of the pot won by hero, with split pots divided evenly
+     */
+    public double getEquity() {
+        double total = win + tie + loss;
+        return total == 0 ? 0 : (win + tie / 2) / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.4f", getEquity());
+    }
+
+    static public RangeEquity calculate(Range hero, Range villain) {
+        return calculate(hero, villain, new CardSet(), new CardSet());
+    }
+
+    static public RangeEquity calculate(Range hero, Range villain, CardSet board) {
+        return calculate(hero, villain, board, new CardSet());
+    }
+
+    static public RangeEquity calculate(Range hero, Range villain, CardSet board, CardSet dead) {
+        return calculate(hero, villain, board, dead, ForkJoinPool.commonPool());
+    }
+
+    static public RangeEquity calculate(Range hero, Range villain, CardSet board, CardSet dead,
+            ForkJoinPool pool) {
+        long boardMask = board.longValue();
+        long deadMask = dead.longValue();
+        if (Long.bitCount(boardMask) > 5) {
+            throw new IllegalArgumentException("Board has more than 5 cards");
+        }
+        if ((boardMask & deadMask) != 0) {
+            throw new IllegalArgumentException("Board contains dead card");
+        }
+        int[] heroCombos = combos(hero, boardMask | deadMask);
+        int[] villainCombos = combos(villain, boardMask | deadMask);
+        int[] deck = EquityEnumerator.deck(EquityEnumerator.DECK_MASK & ~boardMask & ~deadMask);
+        int k = 5 - Long.bitCount(boardMask);
+        // With a full board there is a single runout, so a single task
+        int hi = k == 0 ? 1 : deck.length - k + 1;
+        Task task = new Task(hero, villain, heroCombos, villainCombos, boardMask, deck, k, 0, hi);
+        return new RangeEquity(k == 0 ? task.compute() : pool.invoke(task));
+    }
+
+    /**
+     * Return indexes of the combinations in range that do not contain a used card
+     */
+    static private int[] combos(Range range, long used) {
+        int[] combos = new int[Range.COMBOS];
+        int n = 0;
+        for (int i = 0; i < Range.COMBOS; ++i) {
+            if (range.weight(i) > 0 && (Range.combo(i) & used) == 0) {
+                combos[n++] = i;
+            }
+        }
+        return Arrays.copyOf(combos, n);
+    }
+
+    /**
+     * Enumerates the runouts whose first card is in deck[lo..hi)
+     */
+    static private final class Task extends RecursiveTask<double[]> {
+        static private final long serialVersionUID = 1L;
+
+        private final Range hero;
+        private final Range villain;
+        private final int[] heroCombos;
+        private final int[] villainCombos;
+        private final long board;
+        private final int[] deck;
+        private final int k;
+        private final int lo;
+        private final int hi;
+
+        // Scratch space, combination values are in the high bits
+        private long[] heroKeys;
+        private long[] villainKeys;
+        private double[] lessCards;
+        private double[] equalCards;
+        private double[] allCards;
+        private double[] totals;
+
+        Task(Range hero, Range villain, int[] heroCombos, int[] villainCombos, long board,
+                int[] deck, int k, int lo, int hi) {
+            this.hero = hero;
+            this.villain = villain;
+            this.heroCombos = heroCombos;
+            this.villainCombos = villainCombos;
+            this.board = board;
+            this.deck = deck;
+            this.k = k;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                Task left = new Task(hero, villain, heroCombos, villainCombos, board, deck, k, lo, mid);
+                left.fork();
+                double[] result = new Task(hero, villain, heroCombos, villainCombos, board, deck, k,
+                        mid, hi).compute();
+                double[] other = left.join();
+                for (int i = 0; i < result.length; ++i) {
+                    result[i] += other[i];
+                }
+                return result;
+            }
+            heroKeys = new long[heroCombos.length];
+            villainKeys = new long[villainCombos.length];
+            lessCards = new double[52];
+            equalCards = new double[52];
+            allCards = new double[52];
+            totals = new double[3];
+            if (k == 0) {
+                showdown(board);
+            } else {
+                deal(board | (1L << deck[lo]), lo + 1, k - 1);
+            }
+            return totals;
+        }
+
+        private void deal(long cards, int from, int remaining) {
+            if (remaining == 0) {
+                showdown(cards);
+                return;
+            }
+            for (int i = from, n = deck.length - remaining; i <= n; ++i) {
+                deal(cards | (1L << deck[i]), i + 1, remaining - 1);
+            }
+        }
+
+        static private int evaluate(int[] combos, long board, long[] keys) {
+            int n = 0;
+            for (int combo : combos) {
+                long cards = Range.combo(combo);
+                if ((cards & board) == 0) {
+                    keys[n++] = ((long) Hand.fastEval(cards | board) << 11) | combo;
+                }
+            }
+            Arrays.sort(keys, 0, n);
+            return n;
+        }
+
+        private void showdown(long board) {
+            int heroCount = evaluate(heroCombos, board, heroKeys);
+            int villainCount = evaluate(villainCombos, board, villainKeys);
+
+            Arrays.fill(lessCards, 0);
+            Arrays.fill(equalCards, 0);
+            Arrays.fill(allCards, 0);
+            double allTotal = 0;
+            for (int i = 0; i < villainCount; ++i) {
+                int combo = (int) villainKeys[i] & 0x7FF;
+                double weight = villain.weight(combo);
+                allTotal += weight;
+                allCards[Range.firstCard(combo)] += weight;
+                allCards[Range.secondCard(combo)] += weight;
+            }
+
+            double lessTotal = 0;
+            double equalTotal = 0;
+            int less = 0;
+            int equal = 0;
+            for (int i = 0; i < heroCount; ++i) {
+                int value = (int) (heroKeys[i] >>> 11);
+                int combo = (int) heroKeys[i] & 0x7FF;
+                // Villain combinations below value join the less than group
+                for (; less < villainCount && (int) (villainKeys[less] >>> 11) < value; ++less) {
+                    int c = (int) villainKeys[less] & 0x7FF;
+                    double weight = villain.weight(c);
+                    lessTotal += weight;
+                    lessCards[Range.firstCard(c)] += weight;
+                    lessCards[Range.secondCard(c)] += weight;
+                }
+                // Villain combinations up to value join the less or equal group
+                for (; equal < villainCount && (int) (villainKeys[equal] >>> 11) <= value; ++equal) {
+                    int c = (int) villainKeys[equal] & 0x7FF;
+                    double weight = villain.weight(c);
+                    equalTotal += weight;
+                    equalCards[Range.firstCard(c)] += weight;
+                    equalCards[Range.secondCard(c)] += weight;
+                }
+                int first = Range.firstCard(combo);
+                int second = Range.secondCard(combo);
+                // The same combination is subtracted twice so add it back once
+                double same = villain.weight(combo);
+                double wins = lessTotal - lessCards[first] - lessCards[second];
+                double atMost = equalTotal - equalCards[first] - equalCards[second] + same;
+                double all = allTotal - allCards[first] - allCards[second] + same;
+                double weight = hero.weight(combo);
+                totals[0] += weight * wins;
+                totals[1] += weight * (atMost - wins);
+                totals[2] += weight * (all - atMost);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+/**
+ * Short deck (6+) Hold'em, played with the 36 cards from six to ace.
+ *
+ * A flush beats a full house and A-6-7-8-9 is the lowest straight and
+ * straight flush. Otherwise hands rank as in Texas Hold'em. Values use the
+ * encoding of {@link Hand#fastEval(long)} with the category numbers of
+ * flush and full house swapped, so a higher value is still a better hand;
+ * use {@link #category(int)} to get the category of a value.
+ *
+ * Flushes are looked up by the 9 bit rank mask of the flush suit. With at
+ * most 7 cards a flush can not be made along with four of a kind, so any
+ * other hand is ranked by {@link Hand#fastEval(long)}, which only needs
+ * the ace low straight and the full house corrected.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class ShortDeckEvaluator implements HandEvaluator {
+    static public final ShortDeckEvaluator SHORT_DECK = new ShortDeckEvaluator();
+
+    static public final int RANKS = 9;
+    // Six to ace are the bits before the five of spades
+    static public final long DECK_MASK = (1L << (RANKS * Card.Suit.size)) - 1;
+
+    static private final long SUIT_MASK = 0x111111111L;
+    // Ranks of A-6-7-8-9, where bit i is rank ordinal i
+    static private final int ACE_LOW_RANKS = 0x1E1;
+    static private final int ACE_LOW_STRAIGHT = 0x9876E;
+    static private final int STRAIGHT = Hand.Category.STRAIGHT.ordinal() << 24;
+    static private final int STRAIGHT_FLUSH = Hand.Category.STRAIGHT_FLUSH.ordinal() << 24;
+    static private final int FLUSH_CATEGORY = Hand.Category.FLUSH.ordinal();
+    static private final int FULLHOUSE_CATEGORY = Hand.Category.FULLHOUSE.ordinal();
+
+    static private final int[] flushes = new int[1 << RANKS];
+
+    static {
+        for (int ranks = 0; ranks < flushes.length; ++ranks) {
+            if (Integer.bitCount(ranks) >= 5) {
+                int value = Hand.fastEval(CardSet.suitMask(ranks, 0));
+                if (value >>> 24 == FLUSH_CATEGORY && (ranks & ACE_LOW_RANKS) == ACE_LOW_RANKS) {
+                    value = STRAIGHT_FLUSH | ACE_LOW_STRAIGHT;
+                }
+                flushes[ranks] = swap(value);
+            }
+        }
+    }
+
+    private ShortDeckEvaluator() {
+    }
+
+    /**
+     * Swap the category numbers of flush and full house
+     */
+    static private int swap(int value) {
+        int category = value >>> 24;
+        if (category == FLUSH_CATEGORY || category == FULLHOUSE_CATEGORY) {
+            return value ^ ((FLUSH_CATEGORY ^ FULLHOUSE_CATEGORY) << 24);
+        }
+        return value;
+    }
+
+    /**
+     * Return value of the best hand in the bitset of 5 to 7 cards
+     */
+    static public int fastEval(long cards) {
+        for (int suit = 0; suit < Card.Suit.size; ++suit) {
+            if (Long.bitCount(cards & (SUIT_MASK << suit)) >= 5) {
+                return flushes[CardSet.rankMask(cards, suit)];
+            }
+        }
+        int value = Hand.fastEval(cards);
+        int category = value >>> 24;
+        if (category == FULLHOUSE_CATEGORY) {
+            return swap(value);
+        }
+        if (value < STRAIGHT) {
+            int ranks = CardSet.rankMask(cards | cards >>> 1 | cards >>> 2 | cards >>> 3, 0);
+            if ((ranks & ACE_LOW_RANKS) == ACE_LOW_RANKS) {
+                return STRAIGHT | ACE_LOW_STRAIGHT;
+            }
+        }
+        return value;
+    }
+
+    static public int fastEval(CardSet cards) {
+        return fastEval(cards.longValue());
+    }
+
+    @Override
+    public int eval(long hole, long board) {
+        return fastEval(hole | board);
+    }
+
+    @Override
+    public int getHoleCards() {
+        return 2;
+    }
+
+    @Override
+    public long getDeck() {
+        return DECK_MASK;
+    }
+
+    /**
+     * Return category of a value returned by this evaluator
+     */
+    @Override
+    public Hand.Category category(int value) {
+        return Hand.category(swap(value));
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+/**
+ * Resolves a showdown into main and side pots and pays out the winners.
+ *
+ * Each player still in the hand is evaluated once. A pot is created for each
+ * distinct amount contributed by the players still in the hand, and every
+ * player who contributed at least that amount is eligible to win it. Chips a
+ * pot cannot split evenly go one at a time to the winners in seat order,
+ * starting from the odd chip seat. An uncalled bet ends up in a pot of its
+ * own, won by the player who made it.
+ *
+ * Players are identified by their seat, 0 to {@link #MAX_PLAYERS} - 1, and
+ * sets of players are bitmasks of seats. A Showdown reuses its scratch space
+ * between calls so is not safe to use from multiple threads.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class Showdown {
+    static public final int MAX_PLAYERS = 32;
+
+    private final HandEvaluator evaluator;
+    private final int[] values = new int[MAX_PLAYERS];
+    private final int[] lowValues = new int[MAX_PLAYERS];
+    private final long[] levels = new long[MAX_PLAYERS];
+    private final long[] potAmounts = new long[MAX_PLAYERS];
+    private final int[] potWinners = new int[MAX_PLAYERS];
+    private final int[] potLowWinners = new int[MAX_PLAYERS];
+    private int pots;
+
+    public Showdown() {
+        this(HandEvaluator.HOLDEM);
+    }
+
+    public Showdown(HandEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Return number of pots of the last showdown
+     */
+    public int getPotCount() {
+        return pots;
+    }
+
+    /**
+     * Return chips in pot of the last showdown, where pot 0 is the main pot
+     */
+    public long getPotAmount(int pot) {
+        if (pot >= pots) {
+            throw new IndexOutOfBoundsException("Invalid pot; pot=" + pot);
+        }
+        return potAmounts[pot];
+    }
+
+    /**
+     * Return bitmask of the players that won pot in the last showdown
+     */
+    public int getPotWinners(int pot) {
+        if (pot >= pots) {
+            throw new IndexOutOfBoundsException("Invalid pot; pot=" + pot);
+        }
+        return potWinners[pot];
+    }
+
+    /**
+     * Return bitmask of the players that won the low half of pot in the last
+     * hi/lo showdown, or 0 if there was no qualifying low
+     */
+    public int getPotLowWinners(int pot) {
+        if (pot >= pots) {
+            throw new IndexOutOfBoundsException("Invalid pot; pot=" + pot);
+        }
+        return potLowWinners[pot];
+    }
+
+    /**
+     * Return value of the hand of player in the last showdown, or -1 if the
+     * player had folded
+     */
+    public int getValue(int player) {
+        return values[player];
+    }
+
+    public int resolve(CardSet board, CardSet[] hands, boolean[] folded, long[] contributions,
+            int oddChipSeat, long[] payouts) {
+        long[] masks = new long[hands.length];
+        int foldedMask = 0;
+        for (int i = 0; i < hands.length; ++i) {
+            masks[i] = hands[i].longValue();
+            if (folded[i]) {
+                foldedMask |= 1 << i;
+            }
+        }
+        return resolve(board.longValue(), masks, 0, hands.length, foldedMask, contributions, 0,
+                oddChipSeat, payouts, 0);
+    }
+
+    /**
+     * Resolve a showdown.
+     *
+     * @param board Card mask of the board
+     * @param hands Card mask of the hole cards of each player
+     * @param folded Bitmask of the players that have folded
+     * @param contributions Chips each player put into the pot
+     * @param oddChipSeat First seat to receive chips that do not split evenly
+     * @param payouts Receives the chips won by each player
+     * @return bitmask of the players that won chips
+     */
+    public int resolve(long board, long[] hands, int folded, long[] contributions, int oddChipSeat,
+            long[] payouts) {
+        return resolve(board, hands, 0, hands.length, folded, contributions, 0, oddChipSeat,
+                payouts, 0);
+    }
+
+    /**
+     * Resolve count showdowns of the same number of players. The hands,
+     * contributions and payouts of showdown i start at i * players in the
+     * flat arrays.
+     *
+     * @return total number of pots
+     */
+    public int resolve(int count, int players, long[] boards, long[] hands, int[] folded,
+            long[] contributions, int[] oddChipSeats, long[] payouts) {
+        int total = 0;
+        for (int i = 0, offset = 0; i < count; ++i, offset += players) {
+            resolve(boards[i], hands, offset, players, folded[i], contributions, offset,
+                    oddChipSeats[i], payouts, offset);
+            total += pots;
+        }
+        return total;
+    }
+
+    /**
+     * Resolve a hi/lo split showdown from the values of each player's best
+     * high and low hands, where a higher value is better for both. Each pot
+     * is split between the best high and the best low of its players, with
+     * the odd chip of an odd pot going to the high half. A low of 0 does not
+     * qualify and a pot without a qualifying low goes to the best high.
+     *
+     * @param highs High value of each player, ignored for folded players
+     * @param lows Low value of each player, eg. from {@link LowEvaluator#eightOrBetter(long)}
+     * @return bitmask of the players that won chips
+     */
+    public int resolve(int players, int[] highs, int[] lows, int folded, long[] contributions,
+            int oddChipSeat, long[] payouts) {
+        check(players, oddChipSeat);
+        int live = 0;
+        for (int i = 0; i < players; ++i) {
+            if ((folded & 1 << i) != 0) {
+                values[i] = -1;
+                lowValues[i] = -1;
+            } else {
+                values[i] = highs[i];
+                lowValues[i] = lows[i];
+                live |= 1 << i;
+            }
+        }
+        return distribute(players, live, contributions, 0, true, oddChipSeat, payouts, 0);
+    }
+
+    static private void check(int players, int oddChipSeat) {
+        if (players < 1 || players > MAX_PLAYERS) {
+            throw new IllegalArgumentException("Invalid number of players; players=" + players);
+        }
+        if (oddChipSeat < 0 || oddChipSeat >= players) {
+            throw new IllegalArgumentException("Invalid odd chip seat; oddChipSeat=" + oddChipSeat);
+        }
+    }
+
+    private int resolve(long board, long[] hands, int handOffset, int players, int folded,
+            long[] contributions, int contributionOffset, int oddChipSeat, long[] payouts,
+            int payoutOffset) {
+        check(players, oddChipSeat);
+        // Evaluate the players still in the hand
+        int live = 0;
+        for (int i = 0; i < players; ++i) {
+            if ((folded & 1 << i) != 0) {
+                values[i] = -1;
+                continue;
+            }
+            values[i] = evaluator.eval(hands[handOffset + i], board);
+            live |= 1 << i;
+        }
+        return distribute(players, live, contributions, contributionOffset, false, oddChipSeat,
+                payouts, payoutOffset);
+    }
+
+    /**
+     * Collect the distinct contributions of the live players into levels and
+     * return how many there are
+     */
+    private int levels(int players, int live, long[] contributions, int contributionOffset) {
+        int levelCount = 0;
+        for (int i = 0; i < players; ++i) {
+            long contribution = contributions[contributionOffset + i];
+            if (contribution < 0) {
+                throw new IllegalArgumentException("Invalid contribution; player=" + i);
+            }
+            if ((live & 1 << i) == 0) {
+                continue;
+            }
+            // Insertion sort into the distinct levels
+            int j = levelCount;
+            while (j > 0 && levels[j - 1] > contribution) {
+                j--;
+            }
+            if (j == 0 || levels[j - 1] != contribution) {
+                System.arraycopy(levels, j, levels, j + 1, levelCount - j);
+                levels[j] = contribution;
+                levelCount++;
+            }
+        }
+        return levelCount;
+    }
+
+    /**
+     * Split the contributions into pots and pay each pot to the players with
+     * the best values, and the best low values if hiLo
+     */
+    private int distribute(int players, int live, long[] contributions, int contributionOffset,
+            boolean hiLo, int oddChipSeat, long[] payouts, int payoutOffset) {
+        for (int i = 0; i < players; ++i) {
+            payouts[payoutOffset + i] = 0;
+        }
+        int levelCount = levels(players, live, contributions, contributionOffset);
+        if (live == 0) {
+            throw new IllegalArgumentException("Every player has folded");
+        }
+
+        pots = 0;
+        int winners = 0;
+        long previous = 0;
+        for (int level = 0; level < levelCount; ++level) {
+            long cap = levels[level];
+            boolean last = level == levelCount - 1;
+            long amount = 0;
+            int best = -1;
+            int potWinner = 0;
+            int bestLow = 0;
+            int lowWinner = 0;
+            for (int i = 0; i < players; ++i) {
+                long contribution = contributions[contributionOffset + i];
+                // Chips above the last level can only be won by its players
+                long top = last ? contribution : Math.min(contribution, cap);
+                amount += Math.max(0, top - previous);
+                if ((live & 1 << i) != 0 && contribution >= cap) {
+                    if (values[i] > best) {
+                        best = values[i];
+                        potWinner = 1 << i;
+                    } else if (values[i] == best) {
+                        potWinner |= 1 << i;
+                    }
+                    if (hiLo && lowValues[i] > 0) {
+                        if (lowValues[i] > bestLow) {
+                            bestLow = lowValues[i];
+                            lowWinner = 1 << i;
+                        } else if (lowValues[i] == bestLow) {
+                            lowWinner |= 1 << i;
+                        }
+                    }
+                }
+            }
+            previous = cap;
+            if (amount == 0) {
+                continue;
+            }
+            potAmounts[pots] = amount;
+            potWinners[pots] = potWinner | lowWinner;
+            potLowWinners[pots] = lowWinner;
+            pots++;
+            winners |= potWinner | lowWinner;
+            if (lowWinner == 0) {
+                pay(amount, potWinner, players, oddChipSeat, payouts, payoutOffset);
+            } else {
+                long low = amount / 2;
+                pay(amount - low, potWinner, players, oddChipSeat, payouts, payoutOffset);
+                pay(low, lowWinner, players, oddChipSeat, payouts, payoutOffset);
+            }
+        }
+        return winners;
+    }
+
+    /**
+     * Split amount between winners, giving the chips that do not split evenly
+     * one at a time in seat order from oddChipSeat
+     */
+    static private void pay(long amount, int winners, int players, int oddChipSeat, long[] payouts,
+            int payoutOffset) {
+        int ways = Integer.bitCount(winners);
+        long share = amount / ways;
+        long odd = amount % ways;
+        for (int i = 0; i < players; ++i) {
+            int seat = (oddChipSeat + i) % players;
+            if ((winners & 1 << seat) != 0) {
+                payouts[payoutOffset + seat] += share;
+                if (odd > 0) {
+                    payouts[payoutOffset + seat]++;
+                    odd--;
+                }
+            }
+        }
+    }
+}
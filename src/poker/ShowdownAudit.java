@@ -0,0 +1,294 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the winners recorded in hand history files against the evaluator.
+ *
+ * Each line of a file is one showdown of tab separated fields:
+ * <pre>
+ * id  board  hand  hand ...  winners
+ * </pre>
+ * where id is any text without a tab, board and each hand are cards as
+ * accepted by {@link CardParser}, and winners are the comma separated
+ * indexes from 0 of the hands that won, eg. "17\tAh Kd 7c 2s 2d\tAs Ac\t7h 7d\t1".
+ *
+ * The file is split into chunks that are memory mapped and checked in
+ * parallel, with the cards parsed straight from the mapped bytes. A line
+ * belongs to the chunk holding its first byte. Lines that disagree with the
+ * evaluator or can not be parsed are passed to the listener, which must be
+ * safe to call from multiple threads, and everything else is only counted.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class ShowdownAudit {
+    static public final int DEFAULT_CHUNK_SIZE = 64 << 20;
+    static public final int MAX_LINE = 1 << 16;
+
+    /**
+     * Receives the lines that fail the audit
+     */
+    public interface Listener {
+        /**
+         * @param offset Position of the line in the file
+         * @param recorded Bitmask of the winners recorded in the line
+         * @param actual Bitmask of the winners by the evaluator
+         */
+        void mismatch(Path file, long offset, String line, int recorded, int actual);
+
+        void malformed(Path file, long offset, String line);
+    }
+
+    /**
+     * Totals of an audit
+     */
+    static public final class Summary {
+        private long bytes;
+        private long showdowns;
+        private long mismatches;
+        private long malformed;
+        private final long[] categories = new long[Hand.Category.values().length];
+
+        private void add(Summary other) {
+            bytes += other.bytes;
+            showdowns += other.showdowns;
+            mismatches += other.mismatches;
+            malformed += other.malformed;
+            EquityEnumerator.add(categories, other.categories);
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Return number of lines that were parsed, whether or not they match
+         */
+        public long getShowdowns() {
+            return showdowns;
+        }
+
+        public long getMismatches() {
+            return mismatches;
+        }
+
+        public long getMalformed() {
+            return malformed;
+        }
+
+        /**
+         * Return number of showdowns won with a hand of category, see
+         * {@link HandEvaluator#category(int)}
+         */
+        public long getCount(Hand.Category category) {
+            return categories[category.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            return "showdowns=" + showdowns + " mismatches=" + mismatches + " malformed=" + malformed;
+        }
+    }
+
+    private final HandEvaluator evaluator;
+    private final Listener listener;
+    private final ForkJoinPool pool;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    public ShowdownAudit(Listener listener) {
+        this(HandEvaluator.HOLDEM, listener, ForkJoinPool.commonPool());
+    }
+
+    public ShowdownAudit(HandEvaluator evaluator, Listener listener, ForkJoinPool pool) {
+        this.evaluator = evaluator;
+        this.listener = listener;
+        this.pool = pool;
+    }
+
+    /**
+     * Set number of bytes in each chunk of a file
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1 || chunkSize > Integer.MAX_VALUE - MAX_LINE - 1) {
+            throw new IllegalArgumentException("Invalid chunk size; chunkSize=" + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public Summary audit(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Callable<Summary>> tasks = new ArrayList<>();
+            for (long start = 0; start < size; start += chunkSize) {
+                long chunkStart = start;
+                long chunkEnd = Math.min(size, start + chunkSize);
+                tasks.add(() -> audit(file, channel, size, chunkStart, chunkEnd));
+            }
+            Summary summary = new Summary();
+            try {
+                for (Future<Summary> result : pool.invokeAll(tasks)) {
+                    summary.add(result.get());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Audit interrupted", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw new IllegalStateException("Audit failed", ex.getCause());
+            }
+            return summary;
+        }
+    }
+
+    /**
+     * Audit the lines starting from start (inclusive) to end (exclusive)
+     */
+    private Summary audit(Path file, FileChannel channel, long size, long start, long end)
+            throws IOException {
+        // Map the byte before the chunk to find where its first line starts,
+        // and enough after it to finish its last line
+        long base = Math.max(0, start - 1);
+        long limit = Math.min(size, end + MAX_LINE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, limit - base);
+        int length = buffer.limit();
+        int last = (int) (end - base);
+        int i = 0;
+        if (start > 0) {
+            while (i < length && buffer.get(i) != '\n') {
+                i++;
+            }
+            i++;
+        }
+        Summary summary = new Summary();
+        CardParser parser = new CardParser();
+        int[] tabs = new int[Showdown.MAX_PLAYERS + 3];
+        while (i < last) {
+            int lineEnd = i;
+            while (lineEnd < length && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd == length && limit < size) {
+                summary.malformed++;
+                listener.malformed(file, base + i, text(buffer, i, Math.min(length, i + 80)));
+                break;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > i && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd > i) {
+                check(file, buffer, base, i, lineEnd, parser, tabs, summary);
+            }
+            i = next;
+        }
+        summary.bytes = Math.min(size, end) - start;
+        return summary;
+    }
+
+    private void check(Path file, ByteBuffer buffer, long base, int start, int end,
+            CardParser parser, int[] tabs, Summary summary) {
+        int fields = 0;
+        for (int i = start; i < end && fields < tabs.length; ++i) {
+            if (buffer.get(i) == '\t') {
+                tabs[fields++] = i;
+            }
+        }
+        // id, board, at least two hands and the winners
+        int players = fields - 2;
+        if (players < 2 || players > Showdown.MAX_PLAYERS) {
+            malformed(file, buffer, base, start, end, summary);
+            return;
+        }
+        if (!parser.parse(buffer, tabs[0] + 1, tabs[1]) || parser.getCount() != 5) {
+            malformed(file, buffer, base, start, end, summary);
+            return;
+        }
+        long board = parser.getMask();
+        long used = board;
+        int best = -1;
+        int actual = 0;
+        for (int player = 0; player < players; ++player) {
+            int fieldEnd = player + 2 < fields ? tabs[player + 2] : end;
+            if (!parser.parse(buffer, tabs[player + 1] + 1, fieldEnd) ||
+                    parser.getCount() != evaluator.getHoleCards() || (parser.getMask() & used) != 0) {
+                malformed(file, buffer, base, start, end, summary);
+                return;
+            }
+            long hole = parser.getMask();
+            used |= hole;
+            int value = evaluator.eval(hole, board);
+            if (value > best) {
+                best = value;
+                actual = 1 << player;
+            } else if (value == best) {
+                actual |= 1 << player;
+            }
+        }
+        int recorded = winners(buffer, tabs[fields - 1] + 1, end, players);
+        if (recorded == 0) {
+            malformed(file, buffer, base, start, end, summary);
+            return;
+        }
+        summary.showdowns++;
+        summary.categories[evaluator.category(best).ordinal()]++;
+        if (recorded != actual) {
+            summary.mismatches++;
+            listener.mismatch(file, base + start, text(buffer, start, end), recorded, actual);
+        }
+    }
+
+    /**
+     * Return bitmask of the comma separated indexes, or 0 if they are invalid
+     */
+    static private int winners(ByteBuffer buffer, int start, int end, int players) {
+        int winners = 0;
+        int i = start;
+        while (i < end) {
+            int seat = 0;
+            int digits = 0;
+            while (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9' && digits < 3) {
+                seat = seat * 10 + buffer.get(i) - '0';
+                digits++;
+                i++;
+            }
+            if (digits == 0 || seat >= players) {
+                return 0;
+            }
+            winners |= 1 << seat;
+            // A comma must be followed by another index
+            if (i < end && (buffer.get(i++) != ',' || i == end)) {
+                return 0;
+            }
+        }
+        return winners;
+    }
+
+    private void malformed(Path file, ByteBuffer buffer, long base, int start, int end,
+            Summary summary) {
+        summary.malformed++;
+        listener.malformed(file, base + start, text(buffer, start, end));
+    }
+
+    static private String text(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.Arrays;
+
+/**
+ * Hand evaluator driven by a precomputed state transition table.
+ *
+ * Each state represents a set of up to 6 cards and has 53 slots in the table.
+ * Slot 0 holds the value of the cards in the state and slot (card + 1) holds
+ * the state reached by adding card. Adding the 7th card yields the hand value
+ * directly, so a 7 card hand is evaluated with 7 array lookups. States only
+ * keep track of suits that can still make a flush, which keeps the table at
+ * about 613 thousand states (roughly 130MB).
+ *
+ * Values are the same as those returned by {@link Hand#fastEval(CardSet)}.
+ * The table is built the first time this class is used. Results are
+ * undefined if the same card is added twice.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class StateEvaluator {
+    /**
+     * State with no cards
+     */
+    static public final int START = 0;
+
+    static private final int SLOTS = 53;
+
+    // Index of the first state for each number of cards
+    static private final int[] levelStart = new int[8];
+    static private final int[] table;
+
+    static {
+        table = new Generator().generate();
+    }
+
+    private StateEvaluator() {
+    }
+
+    /**
+     * Add card to state. If the state already contains 6 cards the value of
+     * the 7 card hand is returned instead of a state.
+     */
+    static public int next(int state, int card) {
+        return table[state + card + 1];
+    }
+
+    /**
+     * Return value of the cards in state
+     */
+    static public int eval(int state) {
+        return table[state];
+    }
+
+    static public int eval(int c1, int c2, int c3, int c4, int c5, int c6, int c7) {
+        return table[table[table[table[table[table[table[
+                c1 + 1] + c2 + 1] + c3 + 1] + c4 + 1] + c5 + 1] + c6 + 1] + c7 + 1];
+    }
+
+    /**
+     * Add two cards to a 5 card state, eg. pocket cards to a board state
+     */
+    static public int eval(int state, int c1, int c2) {
+        return table[table[state + c1 + 1] + c2 + 1];
+    }
+
+    static public int eval(CardSet cs) {
+        return eval(START, cs.longValue());
+    }
+
+    /**
+     * Return value of the cards in state combined with cs
+     */
+    static public int eval(int state, CardSet cs) {
+        return eval(state, cs.longValue());
+    }
+
+    /**
+     * Return state for a set of at most 6 cards
+     */
+    static public int state(CardSet cs) {
+        return state(START, cs.longValue());
+    }
+
+    /**
+     * Return state reached by adding cs to state
+     */
+    static public int state(int state, CardSet cs) {
+        return state(state, cs.longValue());
+    }
+
+    static int state(int state, long cards) {
+        if (size(state) + Long.bitCount(cards) > 6) {
+            throw new IllegalArgumentException("State can have at most 6 cards");
+        }
+        for (; cards != 0; cards &= cards - 1) {
+            state = table[state + Long.numberOfTrailingZeros(cards) + 1];
+        }
+        return state;
+    }
+
+    static int eval(int state, long cards) {
+        int n = size(state) + Long.bitCount(cards);
+        if (n > 7) {
+            throw new IllegalArgumentException("Hand can have at most 7 cards");
+        }
+        if (n < 7) {
+            return table[state(state, cards)];
+        }
+        for (; cards != 0; cards &= cards - 1) {
+            state = table[state + Long.numberOfTrailingZeros(cards) + 1];
+        }
+        return state;
+    }
+
+    /**
+     * Return number of cards in state
+     */
+    static int size(int state) {
+        int index = state / SLOTS;
+        int n = 0;
+        while (n < 6 && index >= levelStart[n + 1]) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Builds the transition table.
+     *
+     * A state is identified by a key with one byte per card, sorted in
+     * descending order. The high nibble is rank ordinal + 1 and the low nibble
+     * is suit ordinal + 1, or 0 when that suit can no longer make a flush.
+     */
+    static private final class Generator {
+        private final int[] work = new int[7];
+        private final int[] suitCount = new int[5];
+        private final int[] rankCount = new int[Card.Rank.size + 1];
+        private long[] keys;
+
+        int[] generate() {
+            long[][] levels = new long[7][];
+            levels[0] = new long[] { 0 };
+            int total = 1;
+            for (int n = 1; n <= 6; ++n) {
+                long[] prev = levels[n - 1];
+                long[] next = new long[prev.length * 52];
+                int size = 0;
+                for (long key : prev) {
+                    for (int card = 0; card < 52; ++card) {
+                        long k = addCard(key, card);
+                        if (k != 0) {
+                            next[size++] = k;
+                        }
+                    }
+                }
+                Arrays.sort(next, 0, size);
+                int unique = 0;
+                for (int i = 0; i < size; ++i) {
+                    if (unique == 0 || next[unique - 1] != next[i]) {
+                        next[unique++] = next[i];
+                    }
+                }
+                levels[n] = Arrays.copyOf(next, unique);
+                levelStart[n] = total;
+                total += unique;
+            }
+            levelStart[7] = total;
+
+            // Keys with more cards are always larger so concatenation is sorted
+            keys = new long[total];
+            for (int n = 0; n <= 6; ++n) {
+                System.arraycopy(levels[n], 0, keys, levelStart[n], levels[n].length);
+            }
+
+            int[] t = new int[total * SLOTS];
+            for (int i = 0; i < total; ++i) {
+                long key = keys[i];
+                int base = i * SLOTS;
+                t[base] = Hand.fastEval(toMask(key));
+                boolean last = i >= levelStart[6];
+                for (int card = 0; card < 52; ++card) {
+                    long k = addCard(key, card);
+                    if (k == 0) {
+                        continue;
+                    }
+                    if (last) {
+                        t[base + card + 1] = Hand.fastEval(toMask(k));
+                    } else {
+                        t[base + card + 1] = Arrays.binarySearch(keys, k) * SLOTS;
+                    }
+                }
+            }
+            return t;
+        }
+
+        /**
+         * Return key for state with card added, or 0 if the hand is invalid
+         */
+        private long addCard(long key, int card) {
+            int newCard = (((card >> 2) + 1) << 4) | ((card & 3) + 1);
+            int n = 0;
+            work[n++] = newCard;
+            for (int i = 0; i < 6; ++i) {
+                int c = (int) (key >>> (i << 3)) & 0xFF;
+                if (c == 0) {
+                    break;
+                }
+                if (c == newCard) {
+                    return 0;
+                }
+                work[n++] = c;
+            }
+
+            Arrays.fill(suitCount, 0);
+            Arrays.fill(rankCount, 0);
+            for (int i = 0; i < n; ++i) {
+                suitCount[work[i] & 0xF]++;
+                if (++rankCount[work[i] >> 4] > 4) {
+                    return 0;
+                }
+            }
+
+            // A suit needs at least n - 2 cards to make a flush by the 7th card
+            int needSuited = n - 2;
+            if (needSuited > 1) {
+                for (int i = 0; i < n; ++i) {
+                    if (suitCount[work[i] & 0xF] < needSuited) {
+                        work[i] &= 0xF0;
+                    }
+                }
+            }
+
+            Arrays.sort(work, 0, n);
+            long result = 0;
+            for (int i = 0; i < n; ++i) {
+                result |= (long) work[n - 1 - i] << (i << 3);
+            }
+            return result;
+        }
+
+        /**
+         * Return a card mask for key. Cards without a suit are given suits
+         * that do not make a flush.
+         */
+        private long toMask(long key) {
+            long mask = 0;
+            int kept = 0;
+            for (long k = key; k != 0; k >>>= 8) {
+                int c = (int) k & 0xFF;
+                if ((c & 0xF) != 0) {
+                    kept |= 1 << ((c & 0xF) - 1);
+                    mask |= 1L << (((c >> 4) - 1) * Card.Suit.size + (c & 0xF) - 1);
+                }
+            }
+            int[] load = new int[Card.Suit.size];
+            for (long k = key; k != 0; k >>>= 8) {
+                int c = (int) k & 0xFF;
+                if ((c & 0xF) != 0) {
+                    continue;
+                }
+                int rank = (c >> 4) - 1;
+                int best = -1;
+                for (int suit = 0; suit < Card.Suit.size; ++suit) {
+                    if ((mask & (1L << (rank * Card.Suit.size + suit))) != 0) {
+                        continue;
+                    }
+                    if (best < 0 || score(suit, kept, load) < score(best, kept, load)) {
+                        best = suit;
+                    }
+                }
+                load[best]++;
+                mask |= 1L << (rank * Card.Suit.size + best);
+            }
+            return mask;
+        }
+
+        private int score(int suit, int kept, int[] load) {
+            return ((kept >> suit) & 1) * 8 + load[suit];
+        }
+    }
+}
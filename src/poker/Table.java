@@ -0,0 +1,390 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A no limit Texas Hold'em cash game table played by bots.
+ *
+ * Each hand posts the blinds, deals the pockets with a {@link Dealer}, plays
+ * the four betting rounds and resolves the pots with a {@link Showdown}. The
+ * state of the table is kept in primitive arrays that are reused for every
+ * hand, so playing a hand does not allocate. Players are seats 0 to n - 1
+ * and seat sets such as the folded players are bitmasks. A seat with no
+ * chips sits out, unless rebuys are on in which case it is topped up to the
+ * starting stack.
+ *
+ * A Table is not safe to use from multiple threads, but many tables can be
+ * played at once with {@link #play(Table[], long, Executor)}.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+public final class Table {
+    static public final int MAX_SEATS = 10;
+    static public final long FOLD = -1;
+
+    // Streets
+    static public final int PREFLOP = 0;
+    static public final int FLOP = 1;
+    static public final int TURN = 2;
+    static public final int RIVER = 3;
+
+    private final Bot[] bots;
+    private final int seats;
+    private final long startingStack;
+    private final long smallBlind;
+    private final long bigBlind;
+    private final Dealer dealer;
+    private final Showdown showdown = new Showdown();
+    private final long[] stacks;
+    // Chips put in this hand and this street
+    private final long[] committed;
+    private final long[] streetBets;
+    // Current bet after each seat last acted this street
+    private final long[] actedBets;
+    private final long[] holes;
+    private final long[] payouts;
+    private boolean rebuy;
+    private int button;
+    private int folded;
+    private int allIn;
+    private long board;
+    private int street;
+    private long currentBet;
+    private long minRaise;
+    private long hands;
+
+    public Table(Bot[] bots, long stack, long smallBlind, long bigBlind, long seed) {
+        this(bots, stack, smallBlind, bigBlind, new Dealer(seed));
+    }
+
+    /**
+     * @param bots Player of each seat
+     * @param stack Starting stack of each seat
+     */
+    public Table(Bot[] bots, long stack, long smallBlind, long bigBlind, Dealer dealer) {
+        if (bots.length < 2 || bots.length > MAX_SEATS) {
+            throw new IllegalArgumentException("Invalid number of seats; seats=" + bots.length);
+        }
+        if (smallBlind < 1 || bigBlind < smallBlind) {
+            throw new IllegalArgumentException("Invalid blinds; blinds=" + smallBlind + "/" + bigBlind);
+        }
+        if (stack < 1) {
+            throw new IllegalArgumentException("Invalid stack; stack=" + stack);
+        }
+        this.bots = bots.clone();
+        this.seats = bots.length;
+        this.startingStack = stack;
+        this.smallBlind = smallBlind;
+        this.bigBlind = bigBlind;
+        this.dealer = dealer;
+        this.stacks = new long[seats];
+        this.committed = new long[seats];
+        this.streetBets = new long[seats];
+        this.actedBets = new long[seats];
+        this.holes = new long[seats];
+        this.payouts = new long[seats];
+        Arrays.fill(stacks, stack);
+        this.button = seats - 1;
+    }
+
+    /**
+     * Set whether seats with no chips are topped up to the starting stack
+     */
+    public void setRebuy(boolean rebuy) {
+        this.rebuy = rebuy;
+    }
+
+    public int getSeats() {
+        return seats;
+    }
+
+    public long getStack(int seat) {
+        return stacks[seat];
+    }
+
+    /**
+     * Return chips seat has put in this hand
+     */
+    public long getCommitted(int seat) {
+        return committed[seat];
+    }
+
+    /**
+     * Return chips seat has put in this street
+     */
+    public long getStreetBet(int seat) {
+        return streetBets[seat];
+    }
+
+    /**
+     * Return chips seat must put in to call
+     */
+    public long getToCall(int seat) {
+        return Math.min(currentBet - streetBets[seat], stacks[seat]);
+    }
+
+    /**
+     * Return smallest raise over the current bet
+     */
+    public long getMinRaise() {
+        return minRaise;
+    }
+
+    public long getCurrentBet() {
+        return currentBet;
+    }
+
+    public long getPot() {
+        long pot = 0;
+        for (int seat = 0; seat < seats; ++seat) {
+            pot += committed[seat];
+        }
+        return pot;
+    }
+
+    public long getBigBlind() {
+        return bigBlind;
+    }
+
+    /**
+     * Return card mask of the hole cards of seat
+     */
+    public long getHole(int seat) {
+        return holes[seat];
+    }
+
+    /**
+     * Return card mask of the board
+     */
+    public long getBoard() {
+        return board;
+    }
+
+    public int getStreet() {
+        return street;
+    }
+
+    public int getButton() {
+        return button;
+    }
+
+    /**
+     * Return bitmask of the seats that have folded or are sitting out
+     */
+    public int getFolded() {
+        return folded;
+    }
+
+    /**
+     * Return bitmask of the seats that are all-in
+     */
+    public int getAllIn() {
+        return allIn;
+    }
+
+    /**
+     * Return number of hands played
+     */
+    public long getHands() {
+        return hands;
+    }
+
+    /**
+     * Return the next seat after seat that is in seatMask
+     */
+    private int next(int seat, int seatMask) {
+        do {
+            seat = seat + 1 == seats ? 0 : seat + 1;
+        } while ((seatMask & 1 << seat) == 0);
+        return seat;
+    }
+
+    /**
+     * Put chips of seat in the pot, at most its stack
+     */
+    private void put(int seat, long amount) {
+        amount = Math.min(amount, stacks[seat]);
+        stacks[seat] -= amount;
+        streetBets[seat] += amount;
+        committed[seat] += amount;
+        if (stacks[seat] == 0) {
+            allIn |= 1 << seat;
+        }
+    }
+
+    /**
+     * Play a hand
+     *
+     * @return false if fewer than two seats have chips to play
+     */
+    public boolean playHand() {
+        int active = 0;
+        for (int seat = 0; seat < seats; ++seat) {
+            if (stacks[seat] == 0 && rebuy) {
+                stacks[seat] = startingStack;
+            }
+            if (stacks[seat] > 0) {
+                active |= 1 << seat;
+            }
+            committed[seat] = 0;
+            streetBets[seat] = 0;
+        }
+        if (Integer.bitCount(active) < 2) {
+            return false;
+        }
+        folded = ~active & ((1 << seats) - 1);
+        allIn = 0;
+        board = 0;
+        button = next(button, active);
+        // Heads up the button posts the small blind
+        int sb = Integer.bitCount(active) == 2 ? button : next(button, active);
+        int bb = next(sb, active);
+
+        dealer.shuffle();
+        for (int i = 0, seat = sb; i < Integer.bitCount(active); ++i, seat = next(seat, active)) {
+            holes[seat] = dealer.deal(2);
+        }
+        street = PREFLOP;
+        put(sb, smallBlind);
+        put(bb, bigBlind);
+        currentBet = bigBlind;
+        minRaise = bigBlind;
+        bettingRound(next(bb, active));
+        for (street = FLOP; street <= RIVER && Integer.bitCount(active & ~folded) > 1; ++street) {
+            board |= dealer.deal(street == FLOP ? 3 : 1);
+            for (int seat = 0; seat < seats; ++seat) {
+                streetBets[seat] = 0;
+            }
+            currentBet = 0;
+            minRaise = bigBlind;
+            bettingRound(next(button, active));
+        }
+
+        int live = active & ~folded;
+        if (Integer.bitCount(live) == 1) {
+            // Everyone else folded, so there is no showdown
+            stacks[Integer.numberOfTrailingZeros(live)] += getPot();
+        } else {
+            showdown.resolve(board, holes, folded, committed, next(button, active), payouts);
+            for (int seat = 0; seat < seats; ++seat) {
+                stacks[seat] += payouts[seat];
+            }
+        }
+        hands++;
+        return true;
+    }
+
+    /**
+     * Play a betting round starting from seat first
+     */
+    private void bettingRound(int first) {
+        int all = (1 << seats) - 1;
+        int canAct = all & ~folded & ~allIn;
+        int acted = 0;
+        int seat = first;
+        while (true) {
+            // Everyone acts at least once, unless only one player can act
+            int pending = owing(canAct);
+            if (Integer.bitCount(canAct) > 1) {
+                pending |= canAct & ~acted;
+            }
+            if (pending == 0) {
+                return;
+            }
+            int bit = 1 << seat;
+            if ((pending & bit) != 0) {
+                // A seat that has acted may only raise again once the bet has
+                // gone up by a full raise, so an all-in short of a full raise
+                // does not reopen the betting
+                boolean canRaise = (acted & bit) == 0 || currentBet - actedBets[seat] >= minRaise;
+                acted |= bit;
+                long toCall = currentBet - streetBets[seat];
+                long amount = bots[seat].act(this, seat);
+                if (amount < 0 && toCall > 0) {
+                    folded |= bit;
+                    canAct &= ~bit;
+                    if (Integer.bitCount(all & ~folded) == 1) {
+                        return;
+                    }
+                } else {
+                    if (amount > toCall && !canRaise) {
+                        amount = toCall;
+                    } else if (amount > toCall && amount < toCall + minRaise) {
+                        amount = toCall + minRaise;
+                    }
+                    put(seat, Math.max(amount, toCall));
+                    if (streetBets[seat] > currentBet) {
+                        // An all-in for less than a full raise does not
+                        // change the minimum raise
+                        minRaise = Math.max(minRaise, streetBets[seat] - currentBet);
+                        currentBet = streetBets[seat];
+                    }
+                    if ((allIn & bit) != 0) {
+                        canAct &= ~bit;
+                    }
+                    actedBets[seat] = currentBet;
+                }
+            }
+            seat = seat + 1 == seats ? 0 : seat + 1;
+        }
+    }
+
+    /**
+     * Return seats of seatMask that must put in more to call
+     */
+    private int owing(int seatMask) {
+        int owing = 0;
+        for (int seat = 0; seat < seats; ++seat) {
+            if ((seatMask & 1 << seat) != 0 && streetBets[seat] < currentBet) {
+                owing |= 1 << seat;
+            }
+        }
+        return owing;
+    }
+
+    /**
+     * Play up to hands hands on each table, running each table as a task on
+     * executor, eg. a fixed thread pool or a virtual thread per task
+     * executor. A table stops early once fewer than two seats have chips.
+     *
+     * @return total number of hands played
+     */
+    static public long play(Table[] tables, long hands, Executor executor) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(tables.length);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] played = new long[tables.length];
+        for (int i = 0; i < tables.length; ++i) {
+            Table table = tables[i];
+            int index = i;
+            executor.execute(() -> {
+                try {
+                    long start = table.getHands();
+                    long n = 0;
+                    while (n < hands && table.playHand()) {
+                        n++;
+                    }
+                    played[index] = table.getHands() - start;
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        if (failure.get() != null) {
+            throw new IllegalStateException("Table failed", failure.get());
+        }
+        long total = 0;
+        for (long n : played) {
+            total += n;
+        }
+        return total;
+    }
+}
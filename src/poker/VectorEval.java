@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Batch evaluator using the incubating vector API.
+ *
+ * The suit split, the rank reductions for pairs, triples and quads, and the
+ * flush test are computed across vector lanes. The category is then decided
+ * per hand from the reduced masks. This class must be compiled and run with
+ * --add-modules jdk.incubator.vector and is only loaded when that module is
+ * present.
+ *
+ * @author Cameron Zemek <grom358@gmail.com>
+ */
+final class VectorEval implements BatchEvaluator {
+    static private final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    static private final long SUIT_MASK = 0x1111111111111L;
+    static private final int CHUNK = 1024;
+
+    @Override
+    public void evalBatch(long[] masks, int[] out, int length) {
+        int size = Math.min(CHUNK, length);
+        long[] ranks = new long[size];
+        long[] quads = new long[size];
+        long[] triples = new long[size];
+        long[] sets = new long[size];
+        long[] flushes = new long[size];
+        for (int base = 0; base < length; base += CHUNK) {
+            int n = Math.min(CHUNK, length - base);
+            int bound = SPECIES.loopBound(n);
+            int i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                LongVector cards = LongVector.fromArray(SPECIES, masks, base + i);
+                LongVector s = cards.and(SUIT_MASK);
+                LongVector h = cards.lanewise(VectorOperators.LSHR, 1).and(SUIT_MASK);
+                LongVector d = cards.lanewise(VectorOperators.LSHR, 2).and(SUIT_MASK);
+                LongVector c = cards.lanewise(VectorOperators.LSHR, 3).and(SUIT_MASK);
+                s.or(h).or(d).or(c).intoArray(ranks, i);
+                s.and(h).and(d).and(c).intoArray(quads, i);
+                LongVector cd = c.and(d);
+                LongVector hs = h.and(s);
+                cd.and(h.or(s)).or(hs.and(c.or(d))).intoArray(triples, i);
+                cd.or(hs).or(c.or(d).and(h.or(s))).intoArray(sets, i);
+                // Spades checked last so it wins, as in Hand.fastEval
+                LongVector flush = LongVector.zero(SPECIES);
+                flush = flush.blend(c, count(c).compare(VectorOperators.GE, 5));
+                flush = flush.blend(d, count(d).compare(VectorOperators.GE, 5));
+                flush = flush.blend(h, count(h).compare(VectorOperators.GE, 5));
+                flush = flush.blend(s, count(s).compare(VectorOperators.GE, 5));
+                flush.intoArray(flushes, i);
+            }
+            for (int j = 0; j < i; ++j) {
+                out[base + j] = Hand.fastEval(ranks[j], quads[j], triples[j], sets[j], flushes[j]);
+            }
+            for (; i < n; ++i) {
+                out[base + i] = Hand.fastEval(masks[base + i]);
+            }
+        }
+    }
+
+    /**
+     * Return number of cards in each suit mask. Each nibble holds at most one
+     * card so the multiply sums the nibbles into the top nibble.
+     */
+    static private LongVector count(LongVector suit) {
+        return suit.mul(SUIT_MASK).lanewise(VectorOperators.LSHR, 48).and(0xFL);
+    }
+}
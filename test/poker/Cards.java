@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author grom
+ */
+public class Cards {
+
+    public Cards() {
+    }
+
+    @Test
+    public void parse() {
+        CardParser parser = new CardParser();
+        assertTrue(parser.parse("[Ah,Kd] 7c"));
+        assertEquals(CardParser.OK, parser.getError());
+        assertEquals(3, parser.getCount());
+        assertEquals(10, parser.getPosition());
+        assertEquals(Card.valueOf("Ah").intValue(), parser.getCard(0));
+        assertEquals(Card.valueOf("Kd").intValue(), parser.getCard(1));
+        assertEquals(Card.valueOf("7c").intValue(), parser.getCard(2));
+        assertEquals(new CardSet(CardList.valueOf("[Ah,Kd,7c]")).longValue(), parser.getMask());
+        int[] out = new int[4];
+        parser.getCards(out, 1);
+        assertArrayEquals(new int[] { 0, parser.getCard(0), parser.getCard(1), parser.getCard(2) }, out);
+
+        assertTrue(parser.parse(""));
+        assertEquals(0, parser.getCount());
+        assertEquals(0, parser.getMask());
+    }
+
+    @Test
+    public void parseErrors() {
+        CardParser parser = new CardParser();
+        // Bad rank is reported at the rank
+        assertFalse(parser.parse("[Ah,1c]"));
+        assertEquals(CardParser.ERROR_CHARACTER, parser.getError());
+        assertEquals(4, parser.getPosition());
+
+        // Bad suit is reported at the suit
+        assertFalse(parser.parse("Ah Kx"));
+        assertEquals(CardParser.ERROR_SUIT, parser.getError());
+        assertEquals(4, parser.getPosition());
+
+        // Rank with no suit at the end of the input
+        assertFalse(parser.parse("Ah K"));
+        assertEquals(CardParser.ERROR_SUIT, parser.getError());
+        assertEquals(4, parser.getPosition());
+
+        // Duplicate is reported at the second copy
+        assertFalse(parser.parse("Ah Kd Ah"));
+        assertEquals(CardParser.ERROR_DUPLICATE, parser.getError());
+        assertEquals(6, parser.getPosition());
+
+        // The parser is reusable after an error
+        assertTrue(parser.parse("Ah"));
+        assertEquals(CardParser.OK, parser.getError());
+        assertEquals(1, parser.getCount());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void parseCardOutOfRange() {
+        CardParser parser = new CardParser();
+        parser.parse("Ah");
+        parser.getCard(1);
+    }
+
+    @Test
+    public void parseRange() {
+        CardParser parser = new CardParser();
+        long expected = new CardSet(CardList.valueOf("[Ah,Kd]")).longValue();
+        String str = "xx Ah Kd yy";
+
+        assertTrue(parser.parse(str, 3, 8));
+        assertEquals(expected, parser.getMask());
+        assertEquals(8, parser.getPosition());
+
+        char[] chars = str.toCharArray();
+        assertTrue(parser.parse(chars, 3, 8));
+        assertEquals(expected, parser.getMask());
+        assertEquals(8, parser.getPosition());
+        // Positions of errors are indexes into the array
+        assertFalse(parser.parse(chars, 6, 11));
+        assertEquals(CardParser.ERROR_CHARACTER, parser.getError());
+        assertEquals(9, parser.getPosition());
+
+        ByteBuffer buffer = ByteBuffer.wrap(str.getBytes(StandardCharsets.US_ASCII));
+        buffer.position(2);
+        assertTrue(parser.parse(buffer, 3, 8));
+        assertEquals(expected, parser.getMask());
+        assertEquals(8, parser.getPosition());
+        assertEquals(2, buffer.position());
+        assertFalse(parser.parse(buffer, 0, 5));
+        assertEquals(CardParser.ERROR_CHARACTER, parser.getError());
+        assertEquals(0, parser.getPosition());
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void valueOf() {
+        Card card = Card.valueOf("Td");
+        assertEquals(Card.Rank.TEN, card.getRank());
+        assertEquals(Card.Suit.DIAMOND, card.getSuit());
+        assertEquals("Td", card.toString());
+        for (String str : new String[] { "", "A", "Ahh", "1h", "Ax", "hA" }) {
+            try {
+                Card.valueOf(str);
+                fail("Accepted " + str);
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+    }
+}
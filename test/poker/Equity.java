@@ -0,0 +1,469 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author grom
+ */
+public class Equity {
+
+    public Equity() {
+    }
+
+    private List<Pocket> pockets(String... pockets) {
+        List<Pocket> list = new ArrayList<>();
+        for (String pocket : pockets) {
+            list.add(new Pocket(CardList.valueOf(pocket)));
+        }
+        return list;
+    }
+
+    private void assertConsistent(EquityResult result) {
+        double equity = 0;
+        for (int i = 0; i < result.getPlayerCount(); ++i) {
+            assertEquals(result.getTotal(),
+                    result.getWins(i) + result.getTies(i) + result.getLosses(i));
+            equity += result.getEquity(i);
+        }
+        assertEquals(1.0, equity, 1e-9);
+    }
+
+    @Test
+    public void flopMatchesHandEval() {
+        List<Pocket> pockets = pockets("[Ah,Kh]", "[Qs,Qd]", "[7c,7d]");
+        CardSet board = new CardSet(CardList.valueOf("[2h,7h,Jc]"));
+        EquityResult result = EquityEnumerator.enumerate(pockets, board);
+        assertConsistent(result);
+
+        CardSet used = new CardSet(board);
+        for (Pocket pocket : pockets) {
+            used.addAll(pocket.toList());
+        }
+        long[] wins = new long[3];
+        long total = 0;
+        for (Card turn : Card.newDeck()) {
+            for (Card river : Card.newDeck()) {
+                if (turn.compareTo(river) >= 0 || used.contains(turn) || used.contains(river)) {
+                    continue;
+                }
+                int best = 0;
+                int winner = -1;
+                for (int i = 0; i < 3; ++i) {
+                    CardSet cards = new CardSet(board);
+                    cards.addAll(pockets.get(i).toList());
+                    cards.add(turn);
+                    cards.add(river);
+                    int value = Hand.eval(cards).getValue();
+                    if (value > best) {
+                        best = value;
+                        winner = i;
+                    } else if (value == best) {
+                        winner = -1;
+                    }
+                }
+                total++;
+                if (winner >= 0) {
+                    wins[winner]++;
+                }
+            }
+        }
+        assertEquals(total, result.getTotal());
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(wins[i], result.getWins(i));
+        }
+    }
+
+    @Test
+    public void preflop() {
+        EquityResult result = EquityEnumerator.enumerate(pockets("[As,Ah]", "[Kd,Kc]"));
+        assertConsistent(result);
+        assertEquals(1712304, result.getTotal());
+        assertEquals(0.8126, result.getEquity(0), 0.0001);
+    }
+
+    @Test
+    public void river() {
+        CardSet board = new CardSet(CardList.valueOf("[Ah,Kd,Qc,Js,Th]"));
+        EquityResult result = EquityEnumerator.enumerate(pockets("[2c,3c]", "[4d,5d]"), board);
+        assertEquals(1, result.getTotal());
+        assertEquals(1, result.getSplits(0, 2));
+        assertEquals(0.5, result.getEquity(1), 1e-9);
+    }
+
+    @Test
+    public void deadCards() {
+        CardSet board = new CardSet(CardList.valueOf("[2h,7h,Jc,Ts]"));
+        CardSet dead = new CardSet(CardList.valueOf("[3h,4h,5h]"));
+        EquityResult result = EquityEnumerator.enumerate(pockets("[Ah,Kh]", "[Js,Jd]"), board, dead);
+        assertEquals(52 - 4 - 3 - 4, result.getTotal());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateCard() {
+        EquityEnumerator.enumerate(pockets("[Ah,Kh]", "[Ah,Qd]"));
+    }
+
+    @Test
+    public void simulationMatchesEnumeration() {
+        List<Pocket> pockets = pockets("[Ah,Kh]", "[Qs,Qd]", "[7c,7d]");
+        CardSet board = new CardSet(CardList.valueOf("[2h,7h,Jc]"));
+        EquityResult exact = EquityEnumerator.enumerate(pockets, board);
+        EquitySimulator simulator = new EquitySimulator(1234, 4);
+        EquityResult first = simulator.simulate(pockets, board, new CardSet(),
+                0.005, 0.99, 1, TimeUnit.MINUTES);
+        EquityResult second = simulator.simulate(pockets, board, new CardSet(),
+                0.005, 0.99, 1, TimeUnit.MINUTES);
+        assertConsistent(first);
+        assertEquals(first.getTotal(), second.getTotal());
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(exact.getEquity(i), first.getEquity(i), 0.01);
+            assertEquals(first.getWins(i), second.getWins(i));
+        }
+    }
+
+    /**
+     * Return best value of two hole cards and three board cards by trying each
+     */
+    private int omahaEval(long hole, long board) {
+        int best = 0;
+        for (Card a : new CardSet(hole).toList()) {
+            for (Card b : new CardSet(hole).toList()) {
+                if (a.compareTo(b) >= 0) {
+                    continue;
+                }
+                for (Card c : new CardSet(board).toList()) {
+                    for (Card d : new CardSet(board).toList()) {
+                        for (Card e : new CardSet(board).toList()) {
+                            if (c.compareTo(d) >= 0 || d.compareTo(e) >= 0) {
+                                continue;
+                            }
+                            CardSet cards = new CardSet();
+                            cards.add(a);
+                            cards.add(b);
+                            cards.add(c);
+                            cards.add(d);
+                            cards.add(e);
+                            best = Math.max(best, Hand.fastEval(cards));
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void omahaMatchesFiveCardEval() {
+        Random random = new Random(358);
+        for (int i = 0; i < 20000; ++i) {
+            OmahaEvaluator evaluator = i % 2 == 0 ? OmahaEvaluator.OMAHA : OmahaEvaluator.OMAHA5;
+            long hole = 0;
+            long board = 0;
+            while (Long.bitCount(hole) < evaluator.getHoleCards()) {
+                hole |= 1L << random.nextInt(52);
+            }
+            int n = 3 + i % 3;
+            while (Long.bitCount(board) < n) {
+                // Favour a few suits so flushes are common
+                int card = random.nextInt(52) & (i % 4 == 0 ? ~2 : ~0);
+                board |= (1L << card) & ~hole;
+            }
+            assertEquals(omahaEval(hole, board), evaluator.eval(hole, board));
+        }
+    }
+
+    @Test
+    public void omahaEquity() {
+        List<CardSet> hands = new ArrayList<>();
+        hands.add(new CardSet(CardList.valueOf("[Ah,As,Kh,Ks]")));
+        hands.add(new CardSet(CardList.valueOf("[Jd,Tc,9d,8c]")));
+        CardSet board = new CardSet(CardList.valueOf("[2h,7d,3c]"));
+        EquityResult result = EquityEnumerator.enumerate(OmahaEvaluator.OMAHA, hands, board, new CardSet());
+        assertConsistent(result);
+        assertEquals(41 * 40 / 2, result.getTotal());
+    }
+
+    @Test
+    public void handStrength() {
+        // Example from "Opponent Modeling in Poker" by Billings et al.
+        HandStrengthCalculator calculator = new HandStrengthCalculator();
+        HandStrength strength = calculator.calculate(new Pocket(CardList.valueOf("[Ad,Qc]")),
+                new CardSet(CardList.valueOf("[3h,4c,Jh]")));
+        assertEquals(0.585, strength.getHandStrength(), 0.0005);
+        assertEquals(0.208, strength.getPositivePotential(), 0.0005);
+        assertEquals(0.274, strength.getNegativePotential(), 0.0005);
+        double histogram = 0;
+        for (double share : strength.getHistogram()) {
+            histogram += share;
+        }
+        assertEquals(1.0, histogram, 1e-9);
+
+        // Same hand with the suits permuted comes from the cache
+        HandStrength permuted = calculator.calculate(new Pocket(CardList.valueOf("[Ah,Qs]")),
+                new CardSet(CardList.valueOf("[3c,4s,Jc]")));
+        assertSame(strength, permuted);
+        assertEquals(1, calculator.getCacheSize());
+    }
+
+    @Test
+    public void dealer() {
+        long dead = new CardSet(CardList.valueOf("[Ah,Kd]")).longValue();
+        Dealer first = new Dealer(new SplittableRandom(358), dead);
+        Dealer second = new Dealer(new SplittableRandom(358), dead);
+        for (int i = 0; i < 1000; ++i) {
+            first.shuffle();
+            second.shuffle();
+            assertEquals(50, first.remaining());
+            assertEquals(EquityEnumerator.DECK_MASK & ~dead, first.deal(50));
+            second.deal(50);
+        }
+        first.shuffle();
+        second.shuffle();
+        long[] hands = new long[6];
+        first.deal(hands, 2);
+        for (int i = 0; i < hands.length; ++i) {
+            assertEquals(hands[i], second.deal(2));
+        }
+        Dealer a = first.split();
+        Dealer b = second.split();
+        for (int i = 0; i < 100; ++i) {
+            a.shuffle();
+            b.shuffle();
+            assertEquals(a.deal(7), b.deal(7));
+        }
+    }
+
+    @Test
+    public void equityCache() throws IOException {
+        Path path = Files.createTempFile("equity", ".cache");
+        CardSet board = new CardSet(CardList.valueOf("[2h,7h,Jc]"));
+        CardSet dead = new CardSet();
+        EquityResult result;
+        try (EquityCache cache = new EquityCache(64, path)) {
+            result = cache.enumerate(pockets("[Ah,Kh]", "[Js,Jd]"), board, dead);
+            assertEquals(1, cache.getMisses());
+            // Same spot with hearts and spades swapped, diamonds and clubs swapped
+            CardSet swapped = new CardSet(CardList.valueOf("[2s,7s,Jd]"));
+            EquityResult other = cache.enumerate(pockets("[As,Ks]", "[Jh,Jc]"), swapped, dead);
+            assertSame(result, other);
+            assertEquals(1, cache.getHits());
+            assertNull(cache.get(pockets("[Js,Jd]", "[Ah,Kh]"), board, dead));
+        }
+        // Truncated record at the end is dropped
+        long size = Files.size(path);
+        Files.write(path, new byte[] { 0, 0, 0, 100, 0, 0, 0, 0, 1, 2, 3 }, StandardOpenOption.APPEND);
+        try (EquityCache cache = new EquityCache(64, path)) {
+            assertEquals(size, Files.size(path));
+            assertEquals(1, cache.getDiskSize());
+            EquityResult loaded = cache.enumerate(pockets("[Ah,Kh]", "[Js,Jd]"), board, dead);
+            assertEquals(1, cache.getDiskHits());
+            assertEquals(0, cache.getMisses());
+            assertEquals(result.toString(), loaded.toString());
+        }
+        Files.delete(path);
+    }
+
+    @Test
+    public void equityCacheForeignFile() throws IOException {
+        Path path = Files.createTempFile("equity", ".txt");
+        byte[] text = "not an equity cache".getBytes(StandardCharsets.US_ASCII);
+        Files.write(path, text);
+        try {
+            new EquityCache(64, path).close();
+            fail("Opened a foreign file");
+        } catch (IOException ex) {
+        }
+        assertArrayEquals(text, Files.readAllBytes(path));
+        Files.delete(path);
+    }
+
+    @Test
+    public void equityCacheCorruptRecord() throws IOException {
+        Path path = Files.createTempFile("equity", ".cache");
+        CardSet board = new CardSet(CardList.valueOf("[2h,7h,Jc]"));
+        try (EquityCache cache = new EquityCache(64, path)) {
+            cache.enumerate(pockets("[Ah,Kh]", "[Js,Jd]"), board, new CardSet());
+            cache.enumerate(pockets("[Ah,Kh]", "[Qs,Qd]"), board, new CardSet());
+        }
+        // Flip a bit in the counts of the first record
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[40] ^= 1;
+        Files.write(path, bytes);
+        try {
+            new EquityCache(64, path).close();
+            fail("Opened a corrupt file");
+        } catch (IOException ex) {
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(path));
+        Files.delete(path);
+    }
+
+    /**
+     * Return a preflop table with made up equities
+     */
+    static private PreflopTable syntheticTable() {
+        char[] classEquity = new char[PreflopTable.CLASSES * PreflopTable.CLASSES];
+        for (int i = 0; i < classEquity.length; ++i) {
+            classEquity[i] = (char) (i * 31);
+        }
+        char[] comboEquity = new char[Range.COMBOS * (Range.COMBOS - 1) / 2];
+        for (int i = 0; i < comboEquity.length; ++i) {
+            comboEquity[i] = (char) (i * 7919);
+        }
+        return new PreflopTable(classEquity, comboEquity);
+    }
+
+    @Test
+    public void preflopTableRoundTrip() throws IOException {
+        PreflopTable table = syntheticTable();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        table.write(out);
+        PreflopTable copy = PreflopTable.read(new ByteArrayInputStream(out.toByteArray()));
+        for (int hero = 0; hero < PreflopTable.CLASSES; ++hero) {
+            for (int villain = 0; villain < PreflopTable.CLASSES; ++villain) {
+                assertEquals(table.getClassEquity(hero, villain), copy.getClassEquity(hero, villain), 0);
+            }
+        }
+        Pocket aces = new Pocket(CardList.valueOf("[Ah,As]"));
+        Pocket kings = new Pocket(CardList.valueOf("[Kd,Kc]"));
+        Pocket suited = new Pocket(CardList.valueOf("[7h,6h]"));
+        assertEquals(table.getEquity(aces, kings), copy.getEquity(aces, kings), 0);
+        assertEquals(table.getEquity(suited, kings), copy.getEquity(suited, kings), 0);
+        assertEquals(table.getEquity(kings, suited), copy.getEquity(kings, suited), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void preflopTableBadFile() throws IOException {
+        PreflopTable.read(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }));
+    }
+
+    @Test
+    public void preflopTableSymmetric() {
+        PreflopTable table = syntheticTable();
+        Pocket[] pockets = {
+            new Pocket(CardList.valueOf("[Ah,As]")),
+            new Pocket(CardList.valueOf("[Kd,Kc]")),
+            new Pocket(CardList.valueOf("[7h,6h]")),
+            new Pocket(CardList.valueOf("[2c,Td]"))
+        };
+        for (Pocket a : pockets) {
+            for (Pocket b : pockets) {
+                if (a != b) {
+                    assertEquals(1, table.getEquity(a, b) + table.getEquity(b, a), 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void preflopTableSharedCard() {
+        syntheticTable().getEquity(new Pocket(CardList.valueOf("[Ah,As]")),
+                new Pocket(CardList.valueOf("[Ah,Kh]")));
+    }
+
+    @Test
+    public void classIndex() {
+        // Pairs on the diagonal, suited above and offsuit below
+        assertEquals(0, PreflopTable.classIndex("AA"));
+        assertEquals(PreflopTable.CLASSES - 1, PreflopTable.classIndex("22"));
+        assertEquals(1, PreflopTable.classIndex("AKs"));
+        assertEquals(Card.Rank.size, PreflopTable.classIndex("AKo"));
+        assertEquals(PreflopTable.classIndex("AKs"), PreflopTable.classIndex("KAs"));
+        assertEquals(PreflopTable.classIndex("AKs"),
+                PreflopTable.classIndex(new Pocket(CardList.valueOf("[Kh,Ah]"))));
+        assertEquals(PreflopTable.classIndex("AKo"),
+                PreflopTable.classIndex(new Pocket(CardList.valueOf("[Ah,Kc]"))));
+        assertEquals(PreflopTable.classIndex("TT"),
+                PreflopTable.classIndex(new Pocket(CardList.valueOf("[Td,Tc]"))));
+
+        // Every class has a distinct index
+        boolean[] seen = new boolean[PreflopTable.CLASSES];
+        for (Card.Rank first : Card.Rank.values()) {
+            for (Card.Rank second : Card.Rank.values()) {
+                String hand = "" + first.getLetter() + second.getLetter();
+                int index = PreflopTable.classIndex(first == second ? hand : hand + "s");
+                if (first.ordinal() < second.ordinal()) {
+                    assertFalse(seen[index]);
+                    seen[index] = true;
+                    index = PreflopTable.classIndex(hand + "o");
+                }
+                if (first.ordinal() <= second.ordinal()) {
+                    assertFalse(seen[index]);
+                    seen[index] = true;
+                }
+            }
+        }
+
+        // Not a pair, so suited or offsuit must be given
+        for (String hand : new String[] { "AK", "AAs", "AAo", "AKx", "A", "AKso" }) {
+            try {
+                PreflopTable.classIndex(hand);
+                fail("Accepted " + hand);
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+    }
+
+    @Test
+    public void shortDeckEquity() {
+        List<CardSet> hands = new ArrayList<>();
+        hands.add(new CardSet(CardList.valueOf("[Ah,Kh]")));
+        hands.add(new CardSet(CardList.valueOf("[9c,9d]")));
+        // Flush beats nines full
+        CardSet board = new CardSet(CardList.valueOf("[Th,9h,8c,8d,6h]"));
+        EquityResult result = EquityEnumerator.enumerate(ShortDeckEvaluator.SHORT_DECK, hands, board,
+                new CardSet());
+        assertEquals(1, result.getWins(0));
+
+        result = EquityEnumerator.enumerate(ShortDeckEvaluator.SHORT_DECK, hands, new CardSet(),
+                new CardSet());
+        assertConsistent(result);
+        // 32 cards left in the short deck
+        assertEquals(201376, result.getTotal());
+    }
+
+    @Test
+    public void notEnoughCards() {
+        List<Pocket> hands = pockets("[Ah,Kh]", "[Js,Jd]");
+        long used = new CardSet(CardList.valueOf("[Ah,Kh,Js,Jd,2c]")).longValue();
+        CardSet board = new CardSet(CardList.valueOf("[2c]"));
+        // 4 cards are needed to complete the board but only 3, then none, are left
+        for (long left : new long[] { 0x7, 0 }) {
+            long rest = EquityEnumerator.DECK_MASK & ~used;
+            while (Long.bitCount(rest) > Long.bitCount(left)) {
+                rest &= rest - 1;
+            }
+            CardSet dead = new CardSet(EquityEnumerator.DECK_MASK & ~used & ~rest);
+            try {
+                EquityEnumerator.enumerate(hands, board, dead);
+                fail("Enumerated with " + Long.bitCount(rest) + " cards left");
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortDeckCard() {
+        List<CardSet> hands = new ArrayList<>();
+        hands.add(new CardSet(CardList.valueOf("[Ah,5h]")));
+        hands.add(new CardSet(CardList.valueOf("[9c,9d]")));
+        EquityEnumerator.enumerate(ShortDeckEvaluator.SHORT_DECK, hands, new CardSet(), new CardSet());
+    }
+}
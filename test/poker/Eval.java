@@ -3,6 +3,14 @@
  */
 package poker;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Assume;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -98,6 +106,65 @@ public class Eval {
         assertCategory(Hand.Category.HIGH_CARD, "[Ac,Jd,8c,7c,3s]");
     }
 
+    /**
+     * Return ranks of the cards of a hand ordered by importance: by number
+     * of cards of the rank then by rank, with the ace last in A-2-3-4-5
+     */
+    static private int[] orderedRanks(List<Card> cards, Hand.Category category) {
+        int[] counts = new int[15];
+        for (Card card : cards) {
+            counts[card.rankValue()]++;
+        }
+        int[] ranks = cards.stream()
+                .mapToInt(card -> card.rankValue() | counts[card.rankValue()] << 4)
+                .boxed().sorted((a, b) -> b - a).mapToInt(rank -> rank & 0xF).toArray();
+        boolean straight = category == Hand.Category.STRAIGHT || category == Hand.Category.STRAIGHT_FLUSH;
+        if (straight && ranks[0] == 14 && ranks[1] == 5) {
+            System.arraycopy(ranks, 1, ranks, 0, 4);
+            ranks[4] = 14;
+        }
+        return ranks;
+    }
+
+    @Test
+    public void lazyCards() {
+        Random random = new Random(3);
+        for (int n = 5; n <= 7; ++n) {
+            for (int i = 0; i < 20000; ++i) {
+                long mask = 0;
+                while (Long.bitCount(mask) < n) {
+                    mask |= 1L << random.nextInt(52);
+                }
+                Hand hand = Hand.eval(new CardSet(mask));
+                CardList cards = hand.getCards();
+                String message = new CardSet(mask) + " " + cards;
+                assertEquals(message, 5, cards.size());
+                long best = new CardSet(cards).longValue();
+                assertEquals(message, 5, Long.bitCount(best));
+                assertEquals(message, 0, best & ~mask);
+                assertEquals(message, hand.getValue(), Hand.fastEval(best));
+                assertArrayEquals(message, orderedRanks(cards, hand.getCategory()),
+                        cards.stream().mapToInt(Card::rankValue).toArray());
+                assertSame(cards, hand.getCards());
+            }
+        }
+
+        // Threads racing to build the list all see the same cards
+        for (int i = 0; i < 1000; ++i) {
+            long mask = 0;
+            while (Long.bitCount(mask) < 7) {
+                mask |= 1L << random.nextInt(52);
+            }
+            Hand hand = Hand.eval(new CardSet(mask));
+            List<CardList> lists = IntStream.range(0, 16).parallel()
+                    .mapToObj(j -> hand.getCards()).collect(Collectors.toList());
+            for (CardList list : lists) {
+                assertEquals(lists.get(0), list);
+            }
+            assertEquals(hand.getValue(), Hand.fastEval(new CardSet(lists.get(0))));
+        }
+    }
+
     @Test
     public void fastEvalMatches() {
         for (int a = 0; a < 46; ++a) {
@@ -126,4 +193,344 @@ public class Eval {
             }
         }
     }
+
+    @Test
+    public void stateEvalMatches() {
+        for (int a = 0; a < 46; ++a) {
+            for (int b = a + 1; b < 47; ++b) {
+                for (int c = b + 1; c < 48; ++c) {
+                    for (int d = c + 1; d < 49; ++d) {
+                        for (int e = d + 1; e < 50; ++e) {
+                            long board = (1L << a) | (1L << b) | (1L << c) | (1L << d) | (1L << e);
+                            int state = StateEvaluator.state(new CardSet(board));
+                            if (StateEvaluator.eval(state) != Hand.fastEval(board)) {
+                                fail(new CardSet(board).toString());
+                            }
+                            for (int f = e + 1; f < 51; ++f) {
+                                for (int g = f + 1; g < 52; ++g) {
+                                    long cards = board | (1L << f) | (1L << g);
+                                    int h1 = Hand.fastEval(cards);
+                                    int h2 = StateEvaluator.eval(a, b, c, d, e, f, g);
+                                    int h3 = StateEvaluator.eval(state, f, g);
+                                    if (h1 != h2 || h1 != h3) {
+                                        fail(new CardSet(cards).toString());
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void hashEvalMatches() {
+        for (int a = 0; a < 47; ++a) {
+            for (int b = a + 1; b < 48; ++b) {
+                for (int c = b + 1; c < 49; ++c) {
+                    for (int d = c + 1; d < 50; ++d) {
+                        for (int e = d + 1; e < 51; ++e) {
+                            long hand = (1L << a) | (1L << b) | (1L << c) | (1L << d) | (1L << e);
+                            if (HashEvaluator.eval(hand) != Hand.fastEval(hand)) {
+                                fail(new CardSet(hand).toString());
+                            }
+                            for (int f = e + 1; f < 52; ++f) {
+                                long cards = hand | (1L << f);
+                                if (HashEvaluator.eval(cards) != Hand.fastEval(cards)) {
+                                    fail(new CardSet(cards).toString());
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void evalBatchMatches() {
+        Random random = new Random(1);
+        long[] masks = new long[10007];
+        for (int i = 0; i < masks.length; ++i) {
+            while (Long.bitCount(masks[i]) < 7) {
+                masks[i] |= 1L << random.nextInt(52);
+            }
+        }
+        int[] out = new int[masks.length];
+        Hand.evalBatch(masks, out);
+        for (int i = 0; i < masks.length; ++i) {
+            assertEquals(new CardSet(masks[i]).toString(), Hand.fastEval(masks[i]), out[i]);
+        }
+    }
+
+    @Test
+    public void handRank() {
+        for (int rank = 1; rank <= HandRank.COUNT; ++rank) {
+            int value = HandRank.value(rank);
+            assertEquals(rank, HandRank.rank(value));
+            if (rank > 1) {
+                assertTrue(value > HandRank.value(rank - 1));
+                if (HandRank.category(rank) != HandRank.category(rank - 1)) {
+                    assertEquals(rank, HandRank.firstRank(HandRank.category(rank)));
+                }
+            }
+        }
+        assertEquals(Hand.Category.STRAIGHT, HandRank.category(HandRank.STRAIGHT));
+        assertEquals(1, HandRank.eval(new CardSet(CardList.valueOf("[7c,5d,4h,3s,2c]"))));
+        assertEquals(HandRank.COUNT, HandRank.eval(new CardSet(CardList.valueOf("[Ah,Kh,Qh,Jh,Th,2c,2d]"))));
+
+        Random random = new Random(5);
+        for (int i = 0; i < 100000; ++i) {
+            long mask = 0;
+            while (Long.bitCount(mask) < 7) {
+                mask |= 1L << random.nextInt(52);
+            }
+            assertEquals(HandRank.rank(Hand.fastEval(mask)), HandRank.eval(mask));
+        }
+        // Pair of aces with a repeated kicker, a nibble below a deuce, a bad category
+        for (int value : new int[] { 0, 0x10ee995, 0x10ee910, 0x90edcba, -1 }) {
+            try {
+                HandRank.rank(value);
+                fail("Accepted value " + Integer.toHexString(value));
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+    }
+
+    @Test
+    public void primitives() {
+        boolean[] seen = new boolean[Range.COMBOS];
+        for (Card a : Card.newDeck()) {
+            assertEquals(a.getRank().ordinal(), Card.rank(a.intValue()));
+            assertEquals(a.getSuit().ordinal(), Card.suit(a.intValue()));
+            assertEquals(a.intValue(), Card.intValue(a.getRank(), a.getSuit()));
+            assertEquals(a.longValue(), Card.longValue(a.intValue()));
+            assertSame(a, Card.valueOf(a.intValue()));
+            for (Card b : Card.newDeck()) {
+                if (a == b) {
+                    continue;
+                }
+                Pocket pocket = new Pocket(a, b);
+                int packed = Pocket.pack(a.intValue(), b.intValue());
+                assertTrue(packed >= 0 && packed < Range.COMBOS);
+                assertEquals(packed, Pocket.pack(b.intValue(), a.intValue()));
+                assertEquals(packed, Pocket.pack(a.longValue() | b.longValue()));
+                assertEquals(packed, pocket.intValue());
+                // First is the highest rank, either card of a pair
+                assertEquals(pocket.getFirst().getRank().ordinal(), Card.rank(Pocket.first(packed)));
+                assertEquals(pocket.getSecond().getRank().ordinal(), Card.rank(Pocket.second(packed)));
+                assertEquals(pocket.longValue(), Card.longValue(Pocket.first(packed)) |
+                        Card.longValue(Pocket.second(packed)));
+                assertEquals(a.longValue() | b.longValue(), Pocket.longValue(packed));
+                assertEquals(pocket.longValue(), Pocket.longValue(packed));
+                seen[packed] = true;
+            }
+        }
+        for (boolean b : seen) {
+            assertTrue(b);
+        }
+
+        long mask = CardSet.mask(51, 0, 29, 4);
+        assertEquals(new CardSet(CardList.valueOf("[As,Ks,7h,2c]")).longValue(), mask);
+        int[] cards = new int[7];
+        assertEquals(4, CardSet.toArray(mask, cards));
+        assertArrayEquals(new int[] { 0, 4, 29, 51, 0, 0, 0 }, cards);
+        assertEquals(0, CardSet.toArray(0, cards));
+
+        for (int card : new int[] { -1, 52, 64 }) {
+            try {
+                CardSet.mask(0, card);
+                fail("Accepted card " + card);
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+        for (int pocket : new int[] { -1, Range.COMBOS }) {
+            try {
+                Pocket.first(pocket);
+                fail("Accepted pocket " + pocket);
+            } catch (IllegalArgumentException ex) {
+            }
+            try {
+                Pocket.second(pocket);
+                fail("Accepted pocket " + pocket);
+            } catch (IllegalArgumentException ex) {
+            }
+            try {
+                Pocket.longValue(pocket);
+                fail("Accepted pocket " + pocket);
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+
+        assertEquals(Hand.Category.HIGH_CARD,
+                Hand.category(Hand.fastEval(new CardSet(CardList.valueOf("[Ah,Jd,9c,5s,3h]")))));
+        assertEquals(Hand.Category.STRAIGHT,
+                Hand.category(Hand.fastEval(new CardSet(CardList.valueOf("[5h,4d,3c,2s,Ah]")))));
+        assertEquals(Hand.Category.STRAIGHT_FLUSH,
+                Hand.category(Hand.fastEval(new CardSet(CardList.valueOf("[Ah,Kh,Qh,Jh,Th]")))));
+        for (Hand.Category category : Hand.Category.values()) {
+            assertEquals(category, Hand.category(category.ordinal() << 24));
+        }
+    }
+
+    @Test
+    public void enumerationJob() throws IOException {
+        Path directory = Files.createTempDirectory("job");
+        EnumerationJob job = EnumerationJob.allHands(5, 3, directory);
+        // Stop part way through each shard then resume
+        for (int shard = 0; shard < 3; ++shard) {
+            assertFalse(job.run(shard, 100000));
+            assertFalse(job.isComplete(shard));
+        }
+        for (int shard = 0; shard < 3; ++shard) {
+            assertTrue(job.run(shard, Long.MAX_VALUE));
+            assertTrue(job.isComplete(shard));
+        }
+        long[] histogram = job.merge();
+        long[] categories = new long[Hand.Category.values().length];
+        for (int rank = 1; rank < histogram.length; ++rank) {
+            categories[HandRank.category(rank).ordinal()] += histogram[rank];
+        }
+        assertArrayEquals(new long[] { 1302540, 1098240, 123552, 54912, 10200, 5108, 3744, 624, 40 },
+                categories);
+        for (int shard = 0; shard < 3; ++shard) {
+            Files.delete(job.getCheckpoint(shard));
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void instrument() {
+        // Only when run with -Dpoker.instrument=true
+        Assume.assumeTrue(Instrument.ENABLED);
+        Instrument.reset();
+        long flush = new CardSet(CardList.valueOf("[Ac,Jc,Tc,8c,2c]")).longValue();
+        for (int i = 0; i < 10000; ++i) {
+            Hand.fastEval(flush);
+        }
+        Hand.eval(new CardSet(flush));
+        assertEquals(10000, Instrument.getCalls(Instrument.Site.FAST_EVAL));
+        assertEquals(1, Instrument.getCalls(Instrument.Site.EVAL));
+        assertEquals(10001, Instrument.getCount(Hand.Category.FLUSH));
+        long sampled = 0;
+        for (long n : Instrument.getLatencies(Instrument.Site.FAST_EVAL)) {
+            sampled += n;
+        }
+        assertEquals(Instrument.getSamples(Instrument.Site.FAST_EVAL), sampled);
+        assertTrue(sampled > 0);
+    }
+
+    @Test
+    public void instrumentDisabled() {
+        Assume.assumeFalse(Instrument.ENABLED);
+        Hand.fastEval(new CardSet(CardList.valueOf("[Ac,Jc,Tc,8c,2c]")).longValue());
+        Instrument.reset();
+        assertEquals(0, Instrument.getCalls(Instrument.Site.FAST_EVAL));
+        assertEquals(0, Instrument.getCount(Hand.Category.FLUSH));
+        assertArrayEquals(new long[Instrument.BUCKETS], Instrument.getLatencies(Instrument.Site.FAST_EVAL));
+        assertEquals("", Instrument.report());
+    }
+
+    @Test
+    public void shortDeck() {
+        // Every 5 card hand of the 36 card deck
+        long[] categories = new long[Hand.Category.values().length];
+        new Combinations(ShortDeckEvaluator.DECK_MASK, 5).forEach(cards ->
+                categories[ShortDeckEvaluator.SHORT_DECK.category(ShortDeckEvaluator.fastEval(cards)).ordinal()]++);
+        assertArrayEquals(new long[] { 122400, 193536, 36288, 16128, 6120, 480, 1728, 288, 24 },
+                categories);
+
+        // Flush beats full house, A-6-7-8-9 is the lowest straight
+        int flush = ShortDeckEvaluator.fastEval(new CardSet(CardList.valueOf("[6h,7h,8h,Th,Jh]")));
+        int fullHouse = ShortDeckEvaluator.fastEval(new CardSet(CardList.valueOf("[Ac,Ad,Ah,Ks,Kd]")));
+        int aceLow = ShortDeckEvaluator.fastEval(new CardSet(CardList.valueOf("[Ac,6d,7h,8s,9d]")));
+        int sixHigh = ShortDeckEvaluator.fastEval(new CardSet(CardList.valueOf("[6c,7d,8h,9s,Td]")));
+        int aceLowFlush = ShortDeckEvaluator.fastEval(new CardSet(CardList.valueOf("[Ah,6h,7h,8h,9h,Kh,Ac]")));
+        assertTrue(flush > fullHouse);
+        assertEquals(Hand.Category.STRAIGHT, ShortDeckEvaluator.SHORT_DECK.category(aceLow));
+        assertTrue(aceLow < sixHigh);
+        assertEquals(Hand.Category.STRAIGHT_FLUSH, ShortDeckEvaluator.SHORT_DECK.category(aceLowFlush));
+
+        // 7 card value is the best of its 5 card hands
+        Random random = new Random(1);
+        for (int n = 0; n < 20000; ++n) {
+            long cards = 0;
+            while (Long.bitCount(cards) < 7) {
+                cards |= 1L << random.nextInt(36);
+            }
+            int[] best = { -1 };
+            new Combinations(cards, 5).forEach(subset ->
+                    best[0] = Math.max(best[0], ShortDeckEvaluator.fastEval(subset)));
+            assertEquals(new CardSet(cards).toString(), best[0], ShortDeckEvaluator.fastEval(cards));
+        }
+    }
+
+    private long cards(String str) {
+        return new CardSet(CardList.valueOf(str)).longValue();
+    }
+
+    @Test
+    public void lowHands() {
+        // Every 5 card hand by ace to five category, from four of a kind to no pair
+        long[] categories = new long[6];
+        long[] eightOrBetter = new long[1];
+        int[] bestDeuceToSeven = { 0 };
+        new Combinations(EquityEnumerator.DECK_MASK, 5).forEach(cards -> {
+            categories[LowEvaluator.aceToFive(cards) >>> 26]++;
+            if (LowEvaluator.eightOrBetter(cards) != LowEvaluator.NO_LOW) {
+                eightOrBetter[0]++;
+                assertEquals(LowEvaluator.aceToFive(cards), LowEvaluator.eightOrBetter(cards));
+            }
+            bestDeuceToSeven[0] = Math.max(bestDeuceToSeven[0], LowEvaluator.deuceToSeven(cards));
+        });
+        assertArrayEquals(new long[] { 624, 3744, 54912, 123552, 1098240, 1317888 }, categories);
+        assertEquals(56 * 1024, eightOrBetter[0]);
+        assertEquals(LowEvaluator.deuceToSeven(cards("[7c,5d,4h,3s,2c]")), bestDeuceToSeven[0]);
+
+        assertTrue(LowEvaluator.aceToFive(cards("[Ac,2d,3h,4s,5c]")) >
+                LowEvaluator.aceToFive(cards("[Ac,2d,3h,4s,6c]")));
+        assertTrue(LowEvaluator.aceToFive(cards("[8c,7d,6h,4s,3c]")) >
+                LowEvaluator.aceToFive(cards("[8c,7d,6h,5s,2c]")));
+        assertTrue(LowEvaluator.aceToFive(cards("[Kc,Qd,Jh,9s,8c]")) >
+                LowEvaluator.aceToFive(cards("[Ac,Ad,2h,3s,4c]")));
+        assertEquals(LowEvaluator.NO_LOW, LowEvaluator.eightOrBetter(cards("[Ac,2d,3h,4s,9c,Tc,Kd]")));
+        // A-2-3-4-5 is ace high in deuce to seven and a flush is bad
+        assertTrue(LowEvaluator.deuceToSeven(cards("[Kc,Qd,Jh,9s,8c]")) >
+                LowEvaluator.deuceToSeven(cards("[Ac,2d,3h,4s,5c]")));
+        assertTrue(LowEvaluator.deuceToSeven(cards("[Ac,Ad,2h,3s,4c]")) >
+                LowEvaluator.deuceToSeven(cards("[7c,5c,4c,3c,2c]")));
+
+        Random random = new Random(1);
+        for (int n = 0; n < 20000; ++n) {
+            long cards = 0;
+            while (Long.bitCount(cards) < 7) {
+                cards |= 1L << random.nextInt(52);
+            }
+            // 7 card low is the best of its 5 card lows
+            int[] best = { 0 };
+            new Combinations(cards, 5).forEach(subset ->
+                    best[0] = Math.max(best[0], LowEvaluator.aceToFive(subset)));
+            assertEquals(new CardSet(cards).toString(), best[0], LowEvaluator.aceToFive(cards));
+
+            // Omaha low uses 2 of the first 4 cards and 3 of the last 5
+            long hole = 0;
+            for (long c = cards; Long.bitCount(hole) < 2 + 2; c &= c - 1) {
+                hole |= c & -c;
+            }
+            long board = 0;
+            while (Long.bitCount(board) < 5) {
+                int card = random.nextInt(52);
+                if ((hole & 1L << card) == 0) {
+                    board |= 1L << card;
+                }
+            }
+            long omahaBoard = board;
+            best[0] = LowEvaluator.NO_LOW;
+            new Combinations(hole, 2).forEach(pair -> new Combinations(omahaBoard, 3).forEach(three ->
+                    best[0] = Math.max(best[0], LowEvaluator.eightOrBetter(pair | three))));
+            assertEquals(best[0], LowEvaluator.omahaEightOrBetter(hole, board));
+            assertEquals(best[0], LowEvaluator.low(LowEvaluator.omahaHiLo(hole, board)));
+        }
+    }
 }
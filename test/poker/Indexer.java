@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author grom
+ */
+public class Indexer {
+
+    public Indexer() {
+    }
+
+    @Test
+    public void sizes() {
+        assertEquals(169, HandIndexer.PREFLOP.size());
+        assertEquals(1286792, HandIndexer.FLOP.size());
+        assertEquals(13960050, HandIndexer.TURN.size());
+        assertEquals(123156254, HandIndexer.RIVER.size());
+        assertEquals(2428287420L, new HandIndexer(2, 3, 1, 1).size());
+    }
+
+    @Test
+    public void preflop() {
+        boolean[] seen = new boolean[169];
+        long[] rounds = new long[1];
+        for (int a = 0; a < 52; ++a) {
+            for (int b = a + 1; b < 52; ++b) {
+                long index = HandIndexer.PREFLOP.index(new long[] { 1L << a | 1L << b });
+                seen[(int) index] = true;
+                HandIndexer.PREFLOP.unindex(index, rounds);
+                assertEquals(index, HandIndexer.PREFLOP.index(rounds));
+            }
+        }
+        for (boolean b : seen) {
+            assertTrue(b);
+        }
+    }
+
+    @Test
+    public void suitPermutation() {
+        Random random = new Random(358);
+        long[] rounds = new long[2];
+        for (int i = 0; i < 100000; ++i) {
+            int[] suits = { 0, 1, 2, 3 };
+            for (int j = 3; j > 0; --j) {
+                int r = random.nextInt(j + 1);
+                int t = suits[j];
+                suits[j] = suits[r];
+                suits[r] = t;
+            }
+            long used = 0;
+            long pocket = 0, board = 0, pocket2 = 0, board2 = 0;
+            for (int n = 0; n < 7; ++n) {
+                int card;
+                do {
+                    card = random.nextInt(52);
+                } while ((used & 1L << card) != 0);
+                used |= 1L << card;
+                long permuted = 1L << ((card & ~3) | suits[card & 3]);
+                if (n < 2) {
+                    pocket |= 1L << card;
+                    pocket2 |= permuted;
+                } else {
+                    board |= 1L << card;
+                    board2 |= permuted;
+                }
+            }
+            long index = HandIndexer.RIVER.index(pocket, board);
+            assertEquals(index, HandIndexer.RIVER.index(pocket2, board2));
+            HandIndexer.RIVER.unindex(index, rounds);
+            assertEquals(index, HandIndexer.RIVER.index(rounds));
+        }
+    }
+
+    @Test
+    public void combinationIndex() {
+        // Every other card of the deck, so the cards are not contiguous
+        long deck = 0x5555555555555L;
+        for (int k = 0; k <= 4; ++k) {
+            Combinations combinations = new Combinations(deck, k);
+            assertEquals(Combinations.choose(26, k), combinations.size());
+            for (long i = 0; i < combinations.size(); ++i) {
+                long subset = combinations.get(i);
+                assertEquals(k, Long.bitCount(subset));
+                assertEquals(0, subset & ~deck);
+                assertEquals(i, combinations.indexOf(subset));
+            }
+        }
+        Combinations combinations = new Combinations(deck, 2);
+        assertEquals(-1, combinations.indexOf(0x3L));
+        assertEquals(-1, combinations.indexOf(0x1L));
+    }
+
+    @Test
+    public void combinationParallelStream() {
+        long deck = EquityEnumerator.DECK_MASK;
+        for (int k = 1; k <= 4; ++k) {
+            Combinations combinations = new Combinations(deck, k);
+            // Each index once, so sorted indexes are 0 to size - 1
+            long[] indexes = combinations.parallelStream().map(combinations::indexOf).sorted().toArray();
+            assertEquals(combinations.size(), indexes.length);
+            for (int i = 0; i < indexes.length; ++i) {
+                assertEquals(i, indexes[i]);
+            }
+        }
+    }
+}
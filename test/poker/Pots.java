@@ -0,0 +1,287 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author grom
+ */
+public class Pots {
+
+    public Pots() {
+    }
+
+    private long cards(String str) {
+        return new CardSet(CardList.valueOf(str)).longValue();
+    }
+
+    @Test
+    public void sidePots() {
+        long board = cards("[2h,7d,9c,Js,Kh]");
+        // Player 0 has the best hand but is all-in for the least
+        long[] hands = { cards("[Kd,Kc]"), cards("[Jd,Jc]"), cards("[Ac,Qd]"), cards("[9d,9h]") };
+        long[] contributions = { 50, 200, 200, 100 };
+        long[] payouts = new long[4];
+        Showdown showdown = new Showdown();
+        int winners = showdown.resolve(board, hands, 1 << 3, contributions, 0, payouts);
+        // Chips of the folded player are split between the pots
+        assertEquals(2, showdown.getPotCount());
+        assertEquals(200, showdown.getPotAmount(0));
+        assertEquals(1, showdown.getPotWinners(0));
+        assertEquals(350, showdown.getPotAmount(1));
+        assertEquals(1 << 1, showdown.getPotWinners(1));
+        assertEquals(-1, showdown.getValue(3));
+        assertEquals(0b11, winners);
+        assertArrayEquals(new long[] { 200, 350, 0, 0 }, payouts);
+    }
+
+    @Test
+    public void oddChips() {
+        long board = cards("[Ah,Kd,Qc,Js,Th]");
+        long[] hands = { cards("[2c,3c]"), cards("[4d,5d]"), cards("[6h,7h]") };
+        long[] contributions = { 34, 34, 32 };
+        long[] payouts = new long[3];
+        Showdown showdown = new Showdown();
+        showdown.resolve(board, hands, 0, contributions, 2, payouts);
+        // Main pot of 96 splits three ways, side pot of 4 two ways
+        assertArrayEquals(new long[] { 34, 34, 32 }, payouts);
+
+        contributions = new long[] { 33, 33, 34 };
+        showdown.resolve(board, hands, 0, contributions, 1, payouts);
+        // Main pot of 99 splits evenly, player 2 gets back the uncalled chip
+        assertArrayEquals(new long[] { 33, 33, 34 }, payouts);
+
+        contributions = new long[] { 10, 10, 10 };
+        hands[2] = cards("[9h,8h]");
+        showdown.resolve(board, hands, 1 << 2, contributions, 1, payouts);
+        // Split of 30 between two players, no odd chip
+        assertArrayEquals(new long[] { 15, 15, 0 }, payouts);
+
+        contributions = new long[] { 10, 10, 11 };
+        showdown.resolve(board, hands, 1 << 2, contributions, 1, payouts);
+        assertArrayEquals(new long[] { 15, 16, 0 }, payouts);
+    }
+
+    @Test
+    public void batch() {
+        long board = cards("[2h,7d,9c,Js,Kh]");
+        long[] boards = { board, board };
+        long[] hands = { cards("[Kd,Kc]"), cards("[Jd,Jc]"), cards("[Jd,Jc]"), cards("[Kd,Kc]") };
+        long[] contributions = { 10, 20, 10, 20 };
+        long[] payouts = new long[4];
+        Showdown showdown = new Showdown();
+        assertEquals(4, showdown.resolve(2, 2, boards, hands, new int[2], contributions,
+                new int[2], payouts));
+        assertArrayEquals(new long[] { 20, 10, 0, 30 }, payouts);
+    }
+
+    @Test
+    public void audit() throws IOException {
+        StringBuilder history = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            history.append(i).append("\tAh Kd 7c 2s 2d\tAs Ac\t7h 7d\t0\n");
+            history.append(i).append("\t2h,3h,4h,9c,Td\t[Ad,Kc]\t[As,Ks]\t0,1\r\n");
+        }
+        // Trailing comma, wrong winner, bad card and duplicate card
+        history.append("w\tAh Kd 7c 2s 2d\tAs Ac\t7h 7d\t0,\n");
+        history.append("x\tAh Kd 7c 2s 2d\tAs Ac\t7h 7d\t1\n");
+        history.append("y\tAh Kd 7c 2s 2d\tAs Ax\t7h 7d\t1\n");
+        history.append("z\tAh Kd 7c 2s 2d\tAs Ah\t7h 7d\t1");
+        Path path = Files.createTempFile("history", ".txt");
+        Files.write(path, history.toString().getBytes(StandardCharsets.US_ASCII));
+        List<String> mismatches = Collections.synchronizedList(new ArrayList<String>());
+        List<Long> malformed = Collections.synchronizedList(new ArrayList<Long>());
+        ShowdownAudit audit = new ShowdownAudit(HandEvaluator.HOLDEM, new ShowdownAudit.Listener() {
+            @Override
+            public void mismatch(Path file, long offset, String line, int recorded, int actual) {
+                mismatches.add(line);
+                assertEquals(2, recorded);
+                assertEquals(1, actual);
+            }
+
+            @Override
+            public void malformed(Path file, long offset, String line) {
+                malformed.add(offset);
+            }
+        }, ForkJoinPool.commonPool());
+        // Chunks that split lines
+        audit.setChunkSize(1000);
+        ShowdownAudit.Summary summary = audit.audit(path);
+        assertEquals(Files.size(path), summary.getBytes());
+        assertEquals(2001, summary.getShowdowns());
+        assertEquals(1, summary.getMismatches());
+        assertEquals("x\tAh Kd 7c 2s 2d\tAs Ac\t7h 7d\t1", mismatches.get(0));
+        assertEquals(3, summary.getMalformed());
+        assertEquals(history.lastIndexOf("z"), (long) Collections.max(malformed));
+        assertEquals(1001, summary.getCount(Hand.Category.FULLHOUSE));
+        assertEquals(1000, summary.getCount(Hand.Category.HIGH_CARD));
+        Files.delete(path);
+    }
+
+    @Test
+    public void auditShortDeck() throws IOException {
+        // Flush beats nines full in short deck
+        Path path = Files.createTempFile("history", ".txt");
+        Files.write(path, "1\tTh 9h 8c 8d 6h\tAh Kh\t9c 9d\t0\n".getBytes(StandardCharsets.US_ASCII));
+        ShowdownAudit audit = new ShowdownAudit(ShortDeckEvaluator.SHORT_DECK, new ShowdownAudit.Listener() {
+            @Override
+            public void mismatch(Path file, long offset, String line, int recorded, int actual) {
+                fail(line);
+            }
+
+            @Override
+            public void malformed(Path file, long offset, String line) {
+                fail(line);
+            }
+        }, ForkJoinPool.commonPool());
+        ShowdownAudit.Summary summary = audit.audit(path);
+        assertEquals(1, summary.getShowdowns());
+        assertEquals(1, summary.getCount(Hand.Category.FLUSH));
+        assertEquals(0, summary.getCount(Hand.Category.FULLHOUSE));
+        Files.delete(path);
+    }
+
+    /**
+     * Bot that folds, calls, raises or goes all-in at random
+     */
+    static private Bot randomBot(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        return (table, seat) -> {
+            int r = random.nextInt(10);
+            if (r < 2) {
+                return Table.FOLD;
+            } else if (r < 7) {
+                return table.getToCall(seat);
+            } else if (r < 9) {
+                return table.getToCall(seat) + random.nextLong(table.getPot() + 1);
+            }
+            return table.getStack(seat);
+        };
+    }
+
+    @Test
+    public void table() throws InterruptedException {
+        Table[] tables = new Table[8];
+        for (int i = 0; i < tables.length; ++i) {
+            Bot[] bots = new Bot[2 + i];
+            for (int seat = 0; seat < bots.length; ++seat) {
+                bots[seat] = randomBot(i * 10 + seat);
+            }
+            bots[0] = Bot.CALLER;
+            bots[1] = Bot.RAISER;
+            tables[i] = new Table(bots, 200, 1, 2, i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        long played = Table.play(tables, 2000, executor);
+        executor.shutdown();
+        assertTrue(played > 0);
+        for (Table table : tables) {
+            // Chips are only moved between seats
+            long chips = 0;
+            int withChips = 0;
+            for (int seat = 0; seat < table.getSeats(); ++seat) {
+                assertTrue(table.getStack(seat) >= 0);
+                chips += table.getStack(seat);
+                withChips += table.getStack(seat) > 0 ? 1 : 0;
+            }
+            assertEquals(200 * table.getSeats(), chips);
+            assertTrue(table.getHands() == 2000 || withChips == 1);
+        }
+
+        // Everyone calls to the river then the best hand wins
+        Table table = new Table(new Bot[] { Bot.CALLER, Bot.CALLER, Bot.CALLER }, 100, 1, 2, 358);
+        assertTrue(table.playHand());
+        assertEquals(6, table.getPot());
+        assertEquals(5, Long.bitCount(table.getBoard()));
+        int best = -1;
+        for (int seat = 0; seat < 3; ++seat) {
+            best = Math.max(best, Hand.fastEval(table.getHole(seat) | table.getBoard()));
+        }
+        for (int seat = 0; seat < 3; ++seat) {
+            if (Hand.fastEval(table.getHole(seat) | table.getBoard()) == best) {
+                assertTrue(table.getStack(seat) >= 100);
+            } else {
+                assertEquals(98, table.getStack(seat));
+            }
+        }
+    }
+
+    /**
+     * Bot that plays the actions of script in turn: c to check or call, f to
+     * fold, otherwise the chips to put in
+     */
+    static private Bot scriptedBot(String script) {
+        String[] actions = script.split(" ");
+        int[] next = new int[1];
+        return (table, seat) -> {
+            String action = actions[next[0]++];
+            if (action.equals("c")) {
+                return table.getToCall(seat);
+            } else if (action.equals("f")) {
+                return Table.FOLD;
+            }
+            return Long.parseLong(action);
+        };
+    }
+
+    @Test
+    public void shortAllIn() {
+        // Hand 1 leaves seat 1 with 250 chips. In hand 2 seat 0 bets 100 on
+        // the flop, seat 1 goes all-in for 150 and seat 2 calls. Seat 0 can
+        // then only call as the all-in was short of a full raise.
+        Table table = new Table(new Bot[] {
+                scriptedBot("750 100 c 100 1000 c c"),
+                scriptedBot("c c f c 1000"),
+                scriptedBot("f c c c c c") }, 1000, 50, 100, 358);
+        assertTrue(table.playHand());
+        assertEquals(250, table.getStack(1));
+        assertTrue(table.playHand());
+        for (int seat = 0; seat < 3; ++seat) {
+            assertEquals(250, table.getCommitted(seat));
+        }
+        assertEquals(3000, table.getStack(0) + table.getStack(1) + table.getStack(2));
+    }
+
+    @Test
+    public void hiLo() {
+        long board = cards("[2h,4d,7c,Ks,Kh]");
+        // Player 0 has the nuts high, player 1 the nuts low, player 2 can not win
+        long[] hands = { cards("[Kd,Kc,9s,9h]"), cards("[Ac,3s,Qd,Jd]"), cards("[Qc,Qs,Td,8h]") };
+        int[] highs = new int[3];
+        int[] lows = new int[3];
+        for (int i = 0; i < 3; ++i) {
+            long hiLo = LowEvaluator.omahaHiLo(hands[i], board);
+            highs[i] = LowEvaluator.high(hiLo);
+            lows[i] = LowEvaluator.low(hiLo);
+        }
+        assertEquals(LowEvaluator.NO_LOW, lows[2]);
+        long[] contributions = { 51, 51, 49 };
+        long[] payouts = new long[3];
+        Showdown showdown = new Showdown();
+        assertEquals(3, showdown.resolve(3, highs, lows, 0, contributions, 0, payouts));
+        // Main pot of 147 splits 74 high and 73 low, side pot of 4 splits 2 and 2
+        assertArrayEquals(new long[] { 76, 75, 0 }, payouts);
+        assertEquals(2, showdown.getPotCount());
+        assertEquals(1 << 1, showdown.getPotLowWinners(0));
+
+        // No qualifying low, high scoops
+        lows[1] = LowEvaluator.NO_LOW;
+        showdown.resolve(3, highs, lows, 0, contributions, 0, payouts);
+        assertArrayEquals(new long[] { 151, 0, 0 }, payouts);
+    }
+}
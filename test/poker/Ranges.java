@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 Cameron Zemek <grom358@gmail.com>.
+ */
+package poker;
+
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author grom
+ */
+public class Ranges {
+
+    public Ranges() {
+    }
+
+    @Test
+    public void parse() {
+        assertEquals(6, Range.valueOf("AA").size());
+        assertEquals(18, Range.valueOf("QQ+").size());
+        assertEquals(24, Range.valueOf("QQ-99").size());
+        assertEquals(4, Range.valueOf("AKs").size());
+        assertEquals(12, Range.valueOf("AKo").size());
+        assertEquals(16, Range.valueOf("AK").size());
+        assertEquals(12, Range.valueOf("76s-54s").size());
+        assertEquals(16, Range.valueOf("ATs+").size());
+        assertEquals(1, Range.valueOf("AsKs").size());
+        Range range = Range.valueOf("QQ+, AKs:0.5");
+        assertEquals(22, range.size());
+        assertEquals(0.5, range.getWeight(new Pocket(CardList.valueOf("[Ah,Kh]"))), 0);
+        assertEquals(1.0, range.getWeight(new Pocket(CardList.valueOf("[Qh,Qc]"))), 0);
+        assertEquals(0.0, range.getWeight(new Pocket(CardList.valueOf("[Ah,Kc]"))), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid() {
+        Range.valueOf("AXs");
+    }
+
+    @Test
+    public void invalidDash() {
+        for (String entry : new String[] { "AA-A2", "A2-AA", "AA-K2", "AKs-QTs", "AKs-A9o", "A9s-KQs" }) {
+            try {
+                Range.valueOf(entry);
+                fail("Accepted " + entry);
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+        assertEquals(12, Range.valueOf("A4s-A2s").size());
+        assertEquals(24, Range.valueOf("KQo-KJo").size());
+    }
+
+    @Test
+    public void invalidWeight() {
+        for (String weight : new String[] {"NaN", "Infinity", "-1"}) {
+            try {
+                Range.valueOf("AA:" + weight);
+                fail("Accepted weight " + weight);
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+        Range range = new Range();
+        Pocket pocket = new Pocket(CardList.valueOf("[As,Ks]"));
+        for (double weight : new double[] {Double.NaN, Double.POSITIVE_INFINITY, -0.5}) {
+            try {
+                range.add(pocket, weight);
+                fail("Accepted weight " + weight);
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+    }
+
+    @Test
+    public void river() {
+        CardSet board = new CardSet(CardList.valueOf("[2h,7h,Jc,3d,9s]"));
+        RangeEquity result = RangeEquity.calculate(Range.valueOf("AsKs"), Range.valueOf("QdQc"), board);
+        assertEquals(0, result.getWin(), 0);
+        assertEquals(0, result.getTie(), 0);
+        assertEquals(1, result.getLoss(), 0);
+    }
+
+    @Test
+    public void matchesEnumeration() {
+        Range hero = Range.valueOf("JJ+, AKs:0.5");
+        Range villain = Range.valueOf("TT, AQs, 76s");
+        CardSet board = new CardSet(CardList.valueOf("[Ah,7h,2c]"));
+        RangeEquity result = RangeEquity.calculate(hero, villain, board);
+
+        // Weighted sum of the equity of every compatible pair of combinations
+        double share = 0;
+        double total = 0;
+        for (Card a : Card.newDeck()) {
+            for (Card b : Card.newDeck()) {
+                Pocket h = new Pocket(a, b);
+                if (a.compareTo(b) >= 0 || hero.getWeight(h) == 0 ||
+                        board.contains(a) || board.contains(b)) {
+                    continue;
+                }
+                for (Card c : Card.newDeck()) {
+                    for (Card d : Card.newDeck()) {
+                        Pocket v = new Pocket(c, d);
+                        if (c.compareTo(d) >= 0 || villain.getWeight(v) == 0 ||
+                                board.contains(c) || board.contains(d) ||
+                                c == a || c == b || d == a || d == b) {
+                            continue;
+                        }
+                        double weight = hero.getWeight(h) * villain.getWeight(v);
+                        EquityResult e = EquityEnumerator.enumerate(Arrays.asList(h, v), board);
+                        share += weight * e.getEquity(0) * e.getTotal();
+                        total += weight * e.getTotal();
+                    }
+                }
+            }
+        }
+        assertEquals(share / total, result.getEquity(), 1e-9);
+        assertEquals(total, result.getWin() + result.getTie() + result.getLoss(), 1e-6);
+    }
+}